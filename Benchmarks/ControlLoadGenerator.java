@@ -0,0 +1,161 @@
+package Benchmarks;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Load generator for ControlServer: concurrent clients on localhost each send random hall
+ * calls (with destinations, so guests get off without car calls) in pipelined windows, and
+ * read back one reply per call. Reports calls per second, replies by kind, and the round
+ * trip of a window.
+ *
+ * Usage: ControlLoadGenerator [port=7000] [clients=8] [calls=200000] [floors=30]
+ *                             [window=256] [elevators=0] [seed=42]
+ * calls is per client; with elevators=N every tenth call is a car call in a random elevator.
+ */
+public class ControlLoadGenerator {
+    private static final int CAR_CALL_EVERY = 10; //One call in this many is a car call, when enabled
+
+    private int port; //Server port on localhost
+    private int calls; //Calls sent per client
+    private int floors; //Highest floor to call from or to
+    private int window; //Calls sent before waiting for their replies
+    private int elevators; //Elevators to make car calls in, or 0 for hall calls only
+
+    private final LongAdder ok = new LongAdder(); //Calls queued
+    private final LongAdder busy = new LongAdder(); //Calls refused by a full queue
+    private final LongAdder failed = new LongAdder(); //Calls answered with an error
+    private final LongAdder roundTripNanos = new LongAdder(); //Summed window round trips
+    private final LongAdder windows = new LongAdder(); //Windows completed
+
+    public ControlLoadGenerator(int port, int calls, int floors, int window, int elevators) {
+        this.port = port;
+        this.calls = calls;
+        this.floors = floors;
+        this.window = window;
+        this.elevators = elevators;
+    }
+
+    /**
+     * Runs every client to completion and prints the results
+     * @param clients number of concurrent connections
+     * @param seed seed of the first client's calls, the rest use the following seeds
+     */
+    public void run(int clients, long seed) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i=0;i<clients;i++) {
+                long clientSeed = seed + i;
+                running.add(pool.submit(() -> {
+                    client(new Random(clientSeed));
+                    return null;
+                }));
+            }
+            for (Future<?> f: running) f.get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long total = (long) clients * calls;
+            System.out.printf("%d clients sent %d calls in %.2f s: %.0f calls/s%n", clients, total, seconds, total / seconds);
+            System.out.printf("replies: %d OK, %d BUSY, %d ERR%n", ok.sum(), busy.sum(), failed.sum());
+            System.out.printf("window of %d round trip: %.3f ms average%n", window,
+                    roundTripNanos.sum() / 1e6 / Math.max(1, windows.sum()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * One connection: writes a window of calls, then reads a reply for each, until done
+     */
+    private void client(Random random) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer out = ByteBuffer.allocate(window * 32);
+            ByteBuffer in = ByteBuffer.allocate(window * 32);
+            StringBuilder line = new StringBuilder();
+            int sent = 0;
+            while (sent < calls) {
+                int n = Math.min(window, calls - sent);
+                out.clear();
+                for (int i=0;i<n;i++) {
+                    line.setLength(0);
+                    if (elevators > 0 && (sent + i) % CAR_CALL_EVERY == 0) {
+                        line.append("C ").append(random.nextInt(elevators)).append(' ').append(random.nextInt(floors) + 1);
+                    }
+                    else {
+                        int floor = random.nextInt(floors) + 1;
+                        int destination = random.nextInt(floors - 1) + 1;
+                        if (destination >= floor) destination++;
+                        line.append("H ").append(floor).append(' ').append(random.nextInt(3) + 1).append(' ').append(destination);
+                    }
+                    out.put(line.append('\n').toString().getBytes(StandardCharsets.US_ASCII));
+                }
+                out.flip();
+                long start = System.nanoTime();
+                while (out.hasRemaining()) channel.write(out);
+                readReplies(channel, in, n);
+                roundTripNanos.add(System.nanoTime() - start);
+                windows.increment();
+                sent += n;
+            }
+        }
+    }
+
+    /**
+     * Reads replies until n complete lines have arrived, tallying them by kind
+     */
+    private void readReplies(SocketChannel channel, ByteBuffer in, int n) throws IOException {
+        int replies = 0;
+        while (replies < n) {
+            if (channel.read(in) < 0) throw new EOFException("Server closed the connection");
+            in.flip();
+            int start = 0;
+            for (int i=0;i<in.limit();i++) {
+                if (in.get(i) != '\n') continue;
+                switch (in.get(start)) {
+                    case 'O': ok.increment(); break;
+                    case 'B': busy.increment(); break;
+                    default: failed.increment();
+                }
+                replies++;
+                start = i + 1;
+            }
+            in.position(start);
+            in.compact();
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+        int port = 7000;
+        int clients = 8;
+        int calls = 200_000;
+        int floors = 30;
+        int window = 256;
+        int elevators = 0;
+        long seed = 42;
+        for (String a: args) {
+            int eq = a.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Expected key=value, got: " + a);
+            String key = a.substring(0, eq), value = a.substring(eq + 1);
+            switch (key) {
+                case "port": port = Integer.parseInt(value); break;
+                case "clients": clients = Integer.parseInt(value); break;
+                case "calls": calls = Integer.parseInt(value); break;
+                case "floors": floors = Integer.parseInt(value); break;
+                case "window": window = Integer.parseInt(value); break;
+                case "elevators": elevators = Integer.parseInt(value); break;
+                case "seed": seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown parameter: " + key);
+            }
+        }
+        new ControlLoadGenerator(port, calls, floors, window, elevators).run(clients, seed);
+    }
+}
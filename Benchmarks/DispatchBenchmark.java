@@ -0,0 +1,241 @@
+package Benchmarks;
+
+import VirtualGuests.*;
+import java.util.*;
+
+/**
+ * Microbenchmarks of the dispatch hot paths: RequestHandler.getNextFloor,
+ * Dispatcher.assignPickup, PickupScorer.choose, BatchAssigner.assign and Elevator.update,
+ * swept over floor count, elevator count, batch size and queue depth.
+ *
+ * Usage: DispatchBenchmark [name filter] [-quick]
+ * A quick in-process pass; Benchmarks/jmh measures getNextFloor, assignPickup and update
+ * with JMH in forked JVMs. The SIMD pickup scorer is only measured when run with --add-modules jdk.incubator.vector.
+ */
+public class DispatchBenchmark {
+    private static final int[] FLOORS = {30, 300, 3000};
+    private static final int[] ELEVATORS = {4, 64, 1024};
+    private static final int[] SCORED_FLEETS = {4, 64, 1024, 8192};
+    private static final int[] QUEUE_DEPTHS = {10, 100, 1000};
+    private static final int[] BATCH_SIZES = {16, 256};
+    private static final int PROBES = 1 << 12; //Pre-generated random inputs, cycled through
+    private static final long SEED = 42;
+
+    public static void main(String args[]) {
+        String filter = "";
+        boolean quick = false;
+        for (String a: args) {
+            if (a.equals("-quick")) quick = true;
+            else filter = a;
+        }
+        Harness harness = quick ? new Harness(1, 3, 200) : new Harness(5, 5, 1000);
+
+        Harness.printHeader();
+        for (int floors: FLOORS) {
+            for (int depth: QUEUE_DEPTHS) {
+                if (depth > floors) continue;
+                for (boolean primitive: new boolean[] {false, true}) {
+                    String name = "getNextFloor " + (primitive ? "bitset" : "tree")
+                            + " floors=" + floors + " depth=" + depth;
+                    if (name.contains(filter)) harness.run(name, nextFloor(primitive, floors, depth));
+                }
+            }
+        }
+        for (int floors: FLOORS) {
+            for (int elevators: ELEVATORS) {
+                String name = "assignPickup floors=" + floors + " elevators=" + elevators;
+                if (name.contains(filter)) harness.run(name, assignPickup(floors, elevators));
+            }
+        }
+        PickupScorer vector = PickupScorer.load();
+        boolean simd = !(vector instanceof ScalarPickupScorer);
+        for (int elevators: SCORED_FLEETS) {
+            String prefix = "pickupScore ";
+            String suffix = " floors=300 elevators=" + elevators;
+            if (!(prefix + "index" + suffix).contains(filter) && !(prefix + "scalar" + suffix).contains(filter)
+                    && !(prefix + "vector" + suffix).contains(filter)) continue;
+            //Event-driven traffic, so spreading out the largest fleet stays quick
+            TrafficSource traffic = PoissonTraffic.constant(TrafficProfile.interfloor(300), 200.0 * elevators, SEED);
+            Dispatcher dispatcher = new Dispatcher(setting(300, elevators), traffic, false);
+            dispatcher.runUntil(600_000);
+            int[] floors = randomFloors(new Random(SEED), 300);
+            PickupScorer scalar = new ScalarPickupScorer();
+            checkScorer(dispatcher, scalar, floors);
+            if (simd) checkScorer(dispatcher, vector, floors);
+            if ((prefix + "index" + suffix).contains(filter)) {
+                harness.run(prefix + "index" + suffix, pickupScore(dispatcher, null, floors));
+            }
+            if ((prefix + "scalar" + suffix).contains(filter)) {
+                harness.run(prefix + "scalar" + suffix, pickupScore(dispatcher, scalar, floors));
+            }
+            if ((prefix + "vector" + suffix).contains(filter)) {
+                if (simd) harness.run(prefix + "vector" + suffix, pickupScore(dispatcher, vector, floors));
+                else System.out.println(prefix + "vector" + suffix + ": needs --add-modules jdk.incubator.vector");
+            }
+        }
+        for (int elevators: ELEVATORS) {
+            for (int calls: BATCH_SIZES) {
+                String name = "batchAssign floors=30 elevators=" + elevators + " calls=" + calls;
+                if (name.contains(filter)) harness.run(name, batchAssign(30, elevators, calls));
+            }
+        }
+        for (int floors: FLOORS) {
+            for (int depth: QUEUE_DEPTHS) {
+                if (depth > floors) continue;
+                String name = "update floors=" + floors + " depth=" + depth;
+                if (name.contains(filter)) harness.run(name, update(floors, depth));
+            }
+        }
+    }
+
+    /**
+     * Next-floor lookups against a handler holding depth requests, cycling through directions
+     */
+    private static Harness.Op nextFloor(boolean primitive, int floors, int depth) {
+        RequestHandler handler = primitive ? new BitsetRequestHandler(floors) : new TreeRequestHandler();
+        Random random = new Random(SEED);
+        int timestamp = 0;
+        while (handler.getSize() < depth) {
+            handler.addRequest(random.nextInt(floors) + 1, timestamp++, random.nextInt(10) + 1);
+        }
+        int[] probes = randomFloors(random, floors);
+        return n -> {
+            long acc = 0;
+            for (int i=0;i<n;i++) {
+                acc += handler.getNextFloor(probes[i & (PROBES - 1)], i % 3 - 1);
+            }
+            return acc;
+        };
+    }
+
+    /**
+     * Hall-call assignment against a fleet that has been spread out by a simulated hour
+     */
+    private static Harness.Op assignPickup(int floors, int elevators) {
+        Dispatcher dispatcher = new Dispatcher(setting(floors, elevators), SEED, false);
+        dispatcher.runUntil(3_600_000);
+        Request[] calls = randomCalls(floors);
+        return n -> {
+            long acc = 0;
+            for (int i=0;i<n;i++) {
+                Elevator best = dispatcher.assignPickup(calls[i & (PROBES - 1)]);
+                acc += best == null ? -1 : best.getId();
+            }
+            return acc;
+        };
+    }
+
+    /**
+     * Hall-call choices by a pickup scorer, or by the elevator index if scorer is null
+     */
+    private static Harness.Op pickupScore(Dispatcher dispatcher, PickupScorer scorer, int[] floors) {
+        FleetState fleet = dispatcher.getFleet();
+        Request[] calls = new Request[PROBES];
+        for (int i=0;i<PROBES;i++) {
+            calls[i] = new Request(floors[i], -1, 1);
+        }
+        return n -> {
+            long acc = 0;
+            for (int i=0;i<n;i++) {
+                if (scorer == null) {
+                    Elevator best = dispatcher.assignPickup(calls[i & (PROBES - 1)]);
+                    acc += best == null ? -1 : best.getId();
+                }
+                else {
+                    acc += scorer.choose(fleet, floors[i & (PROBES - 1)]);
+                }
+            }
+            return acc;
+        };
+    }
+
+    /**
+     * Makes sure a scorer picks the same elevators as the index before timing it
+     */
+    private static void checkScorer(Dispatcher dispatcher, PickupScorer scorer, int[] floors) {
+        for (int floor: floors) {
+            Elevator expected = dispatcher.assignPickup(new Request(floor, -1, 1));
+            int chosen = scorer.choose(dispatcher.getFleet(), floor);
+            if (chosen != (expected == null ? -1 : expected.getId())) {
+                throw new IllegalStateException(scorer.getClass().getSimpleName() + " chose elevator " + chosen
+                        + " for floor " + floor + ", index chose " + (expected == null ? -1 : expected.getId()));
+            }
+        }
+    }
+
+    /**
+     * Whole-batch assignments of random hall calls against a fleet spread out by a simulated hour
+     */
+    private static Harness.Op batchAssign(int floors, int elevators, int calls) {
+        Dispatcher dispatcher = new Dispatcher(setting(floors, elevators), SEED, false);
+        dispatcher.runUntil(3_600_000);
+        FleetState fleet = dispatcher.getFleet();
+        int[] ids = new int[elevators];
+        for (int i=0;i<elevators;i++) {
+            ids[i] = i;
+        }
+        Random random = new Random(SEED);
+        List<Request> batch = new ArrayList<>();
+        for (int i=0;i<calls;i++) {
+            batch.add(new Request(random.nextInt(floors) + 1, -1, 1));
+        }
+        BatchAssigner assigner = new BatchAssigner();
+        return n -> {
+            long acc = 0;
+            for (int i=0;i<n;i++) {
+                acc += assigner.assign(batch, fleet, ids, elevators)[i % calls];
+            }
+            return acc;
+        };
+    }
+
+    /**
+     * Single-elevator updates, refilling depth stops whenever the elevator goes idle.
+     * Stops carry no guests so capacity never overflows back to the dispatcher.
+     */
+    private static Harness.Op update(int floors, int depth) {
+        Dispatcher dispatcher = new Dispatcher(setting(floors, 1), SEED, false);
+        Elevator elevator = dispatcher.getElevator(0);
+        Random random = new Random(SEED);
+        int[] stops = randomFloors(random, floors);
+        int[] next = {0};
+        return n -> {
+            long acc = 0;
+            for (int i=0;i<n;i++) {
+                if (!elevator.update()) {
+                    for (int j=0;j<depth;j++) {
+                        int f = stops[next[0]++ & (PROBES - 1)];
+                        if (j % 2 == 0) elevator.addPickup(f, 0);
+                        else elevator.addDropoff(f, 0);
+                    }
+                }
+                acc += elevator.getFloor();
+            }
+            return acc;
+        };
+    }
+
+    private static Setting setting(int floors, int elevators) {
+        Setting setting = new Setting();
+        setting.numFloors = floors;
+        setting.numElevators = elevators;
+        return setting;
+    }
+
+    private static Request[] randomCalls(int floors) {
+        Random random = new Random(SEED);
+        Request[] calls = new Request[PROBES];
+        for (int i=0;i<PROBES;i++) {
+            calls[i] = new Request(random.nextInt(floors) + 1, -1, 1);
+        }
+        return calls;
+    }
+
+    private static int[] randomFloors(Random random, int floors) {
+        int[] probes = new int[PROBES];
+        for (int i=0;i<PROBES;i++) {
+            probes[i] = random.nextInt(floors) + 1;
+        }
+        return probes;
+    }
+}
@@ -0,0 +1,113 @@
+package Benchmarks;
+
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Minimal microbenchmark harness: timed warmup and measurement iterations reporting
+ * throughput (ops/s) and allocation per operation, measured from the benchmark thread's
+ * allocated-bytes counter (the same source JMH's gc profiler reads).
+ *
+ * For quick runs only: every benchmark shares one JVM, so earlier benchmarks shape the
+ * profiles later ones are compiled with. The JMH module in Benchmarks/jmh forks per
+ * benchmark and is the one to compare changes with.
+ */
+public final class Harness {
+    /**
+     * A benchmarked operation, run in batches so the harness adds no per-op overhead
+     */
+    public interface Op {
+        /**
+         * Runs the operation n times
+         * @return a value derived from the results, so the JIT cannot drop the work
+         */
+        long run(int n);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static volatile long sink; //Receives op results to defeat dead-code elimination
+
+    private int warmupIterations; //Untimed iterations before measuring
+    private int measureIterations; //Timed iterations
+    private long iterationNanos; //Target length of each iteration
+
+    /**
+     * @param warmupIterations untimed iterations before measuring
+     * @param measureIterations timed iterations
+     * @param iterationMillis target length of each iteration
+     */
+    public Harness(int warmupIterations, int measureIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+    }
+
+    /**
+     * Prints the column header for results
+     */
+    public static void printHeader() {
+        System.out.printf("%-48s %14s %10s %12s %10s%n", "Benchmark", "ops/s", "error %", "B/op", "MB/s alloc");
+    }
+
+    /**
+     * Benchmarks an operation and prints one result row
+     * @param name label of the benchmark, including its parameters
+     * @param op the operation
+     */
+    public void run(String name, Op op) {
+        //Calibrate batch size to roughly a millisecond of work
+        int batch = 1;
+        while (true) {
+            long start = System.nanoTime();
+            sink += op.run(batch);
+            if (System.nanoTime() - start > 1_000_000 || batch >= 1 << 24) break;
+            batch <<= 1;
+        }
+
+        for (int i=0;i<warmupIterations;i++) {
+            iteration(op, batch);
+        }
+
+        double[] rates = new double[measureIterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        long totalNanos = 0;
+        for (int i=0;i<measureIterations;i++) {
+            long thread = Thread.currentThread().getId();
+            long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long ops = iteration(op, batch);
+            long nanos = System.nanoTime() - start;
+            totalBytes += THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+            totalOps += ops;
+            totalNanos += nanos;
+            rates[i] = ops * 1e9 / nanos;
+        }
+
+        double mean = 0;
+        for (double r: rates) mean += r;
+        mean /= rates.length;
+        double var = 0;
+        for (double r: rates) var += (r - mean) * (r - mean);
+        double error = rates.length > 1 ? 100 * Math.sqrt(var / (rates.length - 1)) / mean : 0;
+
+        System.out.printf("%-48s %14.0f %10.1f %12.2f %10.2f%n", name, mean, error,
+                (double) totalBytes / totalOps, totalBytes / 1e6 / (totalNanos / 1e9));
+    }
+
+    /**
+     * Runs batches until the iteration's time budget is spent
+     * @return number of operations performed
+     */
+    private long iteration(Op op, int batch) {
+        long ops = 0;
+        long start = System.nanoTime();
+        do {
+            sink += op.run(batch);
+            ops += batch;
+        }
+        while (System.nanoTime() - start < iterationNanos);
+        return ops;
+    }
+}
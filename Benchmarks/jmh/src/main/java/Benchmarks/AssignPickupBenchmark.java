@@ -0,0 +1,50 @@
+package Benchmarks;
+
+import VirtualGuests.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Dispatcher.assignPickup for random hall calls against a fleet that has been spread out
+ * by a simulated hour of traffic
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AssignPickupBenchmark {
+    private static final int PROBES = 1 << 12; //Pre-generated random calls, cycled through
+    private static final long SEED = 42;
+
+    @Param({"30", "300", "3000"})
+    public int floors;
+
+    @Param({"4", "64", "1024"})
+    public int elevators;
+
+    private Dispatcher dispatcher;
+    private Request[] calls;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Setting setting = new Setting();
+        setting.numFloors = floors;
+        setting.numElevators = elevators;
+        dispatcher = new Dispatcher(setting, SEED, false);
+        dispatcher.runUntil(3_600_000);
+        Random random = new Random(SEED);
+        calls = new Request[PROBES];
+        for (int i=0;i<PROBES;i++) {
+            calls[i] = new Request(random.nextInt(floors) + 1, -1, 1);
+        }
+    }
+
+    @Benchmark
+    public Elevator assignPickup() {
+        return dispatcher.assignPickup(calls[next++ & (PROBES - 1)]);
+    }
+}
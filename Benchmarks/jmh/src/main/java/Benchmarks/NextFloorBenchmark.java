@@ -0,0 +1,55 @@
+package Benchmarks;
+
+import VirtualGuests.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * RequestHandler.getNextFloor against a handler holding depth requests, cycling through
+ * probe floors and directions. Depths past the floor count are capped at one request per
+ * floor, since requests to the same floor merge.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NextFloorBenchmark {
+    private static final int PROBES = 1 << 12; //Pre-generated random floors, cycled through
+    private static final long SEED = 42;
+
+    @Param({"tree", "bitset"})
+    public String handler;
+
+    @Param({"30", "300", "3000"})
+    public int floors;
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private RequestHandler requests;
+    private int[] probes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        requests = handler.equals("bitset") ? new BitsetRequestHandler(floors) : new TreeRequestHandler();
+        Random random = new Random(SEED);
+        int timestamp = 0;
+        while (requests.getSize() < Math.min(depth, floors)) {
+            requests.addRequest(random.nextInt(floors) + 1, timestamp++, random.nextInt(10) + 1);
+        }
+        probes = new int[PROBES];
+        for (int i=0;i<PROBES;i++) {
+            probes[i] = random.nextInt(floors) + 1;
+        }
+    }
+
+    @Benchmark
+    public int getNextFloor() {
+        int i = next++;
+        return requests.getNextFloor(probes[i & (PROBES - 1)], i % 3 - 1);
+    }
+}
@@ -0,0 +1,57 @@
+package Benchmarks;
+
+import VirtualGuests.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Elevator.update on a single elevator, refilled with depth stops whenever it goes idle.
+ * Stops carry no guests, so capacity never overflows back to the dispatcher. Depths past
+ * the floor count merge into fewer stops.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateBenchmark {
+    private static final int PROBES = 1 << 12; //Pre-generated random stops, cycled through
+    private static final long SEED = 42;
+
+    @Param({"30", "300", "3000"})
+    public int floors;
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private Elevator elevator;
+    private int[] stops;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Setting setting = new Setting();
+        setting.numFloors = floors;
+        setting.numElevators = 1;
+        elevator = new Dispatcher(setting, SEED, false).getElevator(0);
+        Random random = new Random(SEED);
+        stops = new int[PROBES];
+        for (int i=0;i<PROBES;i++) {
+            stops[i] = random.nextInt(floors) + 1;
+        }
+    }
+
+    @Benchmark
+    public int update() {
+        if (!elevator.update()) {
+            for (int j=0;j<depth;j++) {
+                int f = stops[next++ & (PROBES - 1)];
+                if (j % 2 == 0) elevator.addPickup(f, 0);
+                else elevator.addDropoff(f, 0);
+            }
+        }
+        return elevator.getFloor();
+    }
+}
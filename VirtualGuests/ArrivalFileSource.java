@@ -0,0 +1,253 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Streams hall calls from a line-oriented arrival file, e.g. an export of building
+ * access-control logs. Each line is "time,floor,guests" with time in milliseconds from
+ * the start of the simulation, sorted by time. The file is read through a fixed-size
+ * buffer and parsed straight from bytes, so memory use stays flat no matter how large
+ * the file is. Blank lines, '#' comments, a header row and malformed rows are skipped.
+ *
+ * Arrival logs don't say where guests go, so car calls come from a fallback source.
+ */
+public class ArrivalFileSource implements TrafficSource, Closeable {
+    private static final int BUFFER_BYTES = 1 << 16; //Read buffer size, also the longest allowed line
+    private static final int MAX_DIGITS = 18; //Longest number accepted, so parsing can't overflow a long
+
+    private FileChannel channel; //Open arrival file
+    private ByteBuffer buffer; //Bytes read but not yet parsed
+    private boolean endOfFile; //Whether the channel is exhausted
+    private TrafficSource carCalls; //Source of drop-off requests
+    private long skippedLines; //Malformed or oversized lines ignored
+    private long lineNumber; //Lines read so far
+
+    private boolean hasNext; //Whether a lookahead arrival is loaded
+    private long nextTime; //Lookahead arrival fields
+    private int nextFloor;
+    private int nextGuests;
+    private long[] fields; //Parsed numeric fields of the current line
+    private int numFloors; //Highest valid floor
+
+    /**
+     * Opens an arrival file for streaming
+     * @param path the arrival file
+     * @param numFloors highest valid floor, rows outside the building are skipped
+     * @param carCalls source of drop-off requests once guests are onboard
+     */
+    public ArrivalFileSource(String path, int numFloors, TrafficSource carCalls) throws IOException {
+        this.numFloors = numFloors;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        this.buffer.flip(); //Start empty, in read mode
+        this.carCalls = carCalls;
+        this.fields = new long[3];
+        readNext();
+    }
+
+    public Vector<Request> generatePickups(long time) {
+        Vector<Request> pickups = new Vector<>();
+        while (hasNext && nextTime <= time) {
+            pickups.add(new Request(nextFloor, -1, nextGuests, nextTime));
+            readNext();
+        }
+        return pickups;
+    }
+
+    public Vector<Request> generateDropoffs(Elevator e, long time) {
+        return carCalls.generateDropoffs(e, time);
+    }
+
+    public long nextArrivalTime(long time) {
+        return hasNext ? nextTime : Long.MAX_VALUE;
+    }
+
+    /**
+     * Saves the lookahead arrival and the offset of the first unparsed byte, along with
+     * the car call source
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(channel.position() - buffer.remaining());
+        out.writeBoolean(hasNext);
+        out.writeLong(nextTime);
+        out.writeInt(nextFloor);
+        out.writeInt(nextGuests);
+        out.writeLong(lineNumber);
+        out.writeLong(skippedLines);
+        carCalls.writeState(out);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        channel.position(in.readLong());
+        buffer.clear();
+        buffer.flip();
+        endOfFile = false;
+        hasNext = in.readBoolean();
+        nextTime = in.readLong();
+        nextFloor = in.readInt();
+        nextGuests = in.readInt();
+        lineNumber = in.readLong();
+        skippedLines = in.readLong();
+        carCalls.readState(in);
+    }
+
+    /**
+     * Checks whether every arrival has been released
+     * @return true if the end of the file was reached
+     */
+    public boolean isFinished() {
+        return !hasNext;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    /**
+     * Parses lines until a valid arrival is loaded into the lookahead fields or the file ends
+     */
+    private void readNext() {
+        long lastTime = hasNext ? nextTime : 0;
+        hasNext = false;
+        while (true) {
+            int end = findLineEnd();
+            if (end == -1) return;
+            int start = buffer.position();
+            buffer.position(Math.min(end + 1, buffer.limit()));
+
+            if (parseLine(start, end)) {
+                //Rows out of order are released right away rather than reordered
+                nextTime = Math.max(fields[0], lastTime);
+                nextFloor = (int) fields[1];
+                nextGuests = (int) fields[2];
+                hasNext = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the next line, refilling the buffer as needed
+     * @return index of the line's newline (or of the buffer limit for a final unterminated
+     *     line), or -1 if there are no more lines
+     */
+    private int findLineEnd() {
+        int scanned = buffer.position();
+        while (true) {
+            for (int i=scanned;i<buffer.limit();i++) {
+                if (buffer.get(i) == '\n') return i;
+            }
+            if (endOfFile) {
+                return buffer.hasRemaining() ? buffer.limit() : -1;
+            }
+            if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                //Line longer than the whole buffer, drop what we have of it
+                skippedLines++;
+                lineNumber++;
+                buffer.clear();
+                buffer.flip();
+                skipToNextLine();
+                scanned = 0;
+                continue;
+            }
+            scanned = buffer.remaining();
+            fill();
+        }
+    }
+
+    /**
+     * Reads more of the file after the unparsed bytes
+     */
+    private void fill() {
+        buffer.compact();
+        try {
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer);
+                if (n == -1) {
+                    endOfFile = true;
+                    break;
+                }
+                if (n == 0) break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Discards input up to and including the next newline
+     */
+    private void skipToNextLine() {
+        while (true) {
+            fill();
+            for (int i=buffer.position();i<buffer.limit();i++) {
+                if (buffer.get(i) == '\n') {
+                    buffer.position(i + 1);
+                    return;
+                }
+            }
+            buffer.position(buffer.limit());
+            if (endOfFile) return;
+        }
+    }
+
+    /**
+     * Parses "time,floor,guests" from bytes [start, end) into fields. Extra columns are ignored.
+     * @return true if the line is a valid arrival
+     */
+    private boolean parseLine(int start, int end) {
+        lineNumber++;
+        for (int i=start;i<end;i++) {
+            if (buffer.get(i) == '#') {
+                end = i; //Drop trailing comment
+                break;
+            }
+        }
+
+        int field = 0;
+        long value = 0;
+        int digits = 0;
+        boolean blank = true;
+        for (int i=start;i<=end;i++) {
+            byte b = i < end ? buffer.get(i) : (byte) ',';
+            if (b >= '0' && b <= '9') {
+                if (++digits > MAX_DIGITS) {
+                    field = -2; //Number too long
+                    blank = false;
+                    break;
+                }
+                value = value * 10 + (b - '0');
+                blank = false;
+            }
+            else if (b == ',') {
+                if (digits == 0) break;
+                if (field < fields.length) fields[field] = value;
+                field++;
+                value = 0;
+                digits = 0;
+            }
+            else if (b != ' ' && b != '\t' && b != '\r') {
+                blank = false;
+                field = -1; //Header or garbage
+                break;
+            }
+        }
+        //Guest counts are checked against the int they are narrowed to
+        if (field >= fields.length && fields[1] >= 1 && fields[1] <= numFloors
+                && fields[2] > 0 && fields[2] <= Integer.MAX_VALUE) {
+            return true;
+        }
+        //Blank lines, comments and a header row are expected, anything else counts as skipped
+        if (!blank && !(field == -1 && lineNumber == 1)) skippedLines++;
+        return false;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,153 @@
+package VirtualGuests;
+
+import java.util.*;
+
+/**
+ * Assigns a batch of hall calls to elevators together instead of one at a time.
+ * A call costs the floors its elevator travels to reach it plus a fixed cost for every
+ * stop already ahead of it, including calls given to that elevator earlier in the batch,
+ * so a burst of calls on one floor spreads over the fleet instead of piling onto the
+ * closest car.
+ *
+ * The batch is solved exactly as a min-cost flow by successive shortest paths. Calls are
+ * added one by one, and each may bump earlier calls to other elevators along a chain of
+ * reassignments, found with Dijkstra over the elevators holding calls. Potentials carried
+ * over from the previous call keep every reassignment cost non-negative, and the cheapest
+ * call to bump between every pair of elevators is kept up to date as calls move, so each
+ * call costs holders times elevators instead of calls times elevators.
+ */
+public class BatchAssigner {
+    public static final int MAX_BATCH = 256; //Calls solved together, larger backlogs are solved in chunks
+    private static final int STOP_COST = 2; //Floors of travel one extra stop is worth
+
+    private int[] travel = new int[0]; //Travel cost per (call, elevator)
+    private int[] load = new int[0]; //Stops ahead per elevator, including calls assigned so far
+    private int[] held = new int[0]; //Calls of this batch held per elevator
+    private int[] bumpCost = new int[0]; //Cheapest change in travel moving a call from one elevator to another
+    private int[] bumpCall = new int[0]; //Call achieving that cheapest move
+    private int[] chain = new int[0]; //Elevators along the last chain of reassignments
+    private int[] dist = new int[0]; //Cheapest way to give each elevator the new call, less its potential
+    private int[] potential = new int[0]; //Last call's distances, keeping reduced costs non-negative
+    private int[] via = new int[0]; //Call bumped onto each elevator on that cheapest way, or -1
+    private boolean[] settled = new boolean[0]; //Elevators whose distance is final
+    private int[] result = new int[0]; //Elevator chosen per call
+
+    /**
+     * Finds the minimum-cost assignment of calls to elevators
+     * @param calls the hall calls, at most MAX_BATCH for bounded run time
+     * @param fleet state of every elevator
+     * @param ids ids of the elevators to choose from
+     * @param m number of elevators to choose from, at the front of ids
+     * @return the index into ids of the elevator chosen for each call (valid for the first
+     *         calls.size() entries, reused by the next call to assign)
+     */
+    public int[] assign(List<Request> calls, FleetState fleet, int[] ids, int m) {
+        int n = calls.size();
+        ensureCapacity(n, m);
+        for (int c=0;c<m;c++) {
+            load[c] = fleet.getNumRequests(ids[c]);
+            held[c] = 0;
+            potential[c] = 0;
+        }
+        for (int i=0;i<n;i++) {
+            fleet.travelCosts(calls.get(i).floor, ids, m, travel, i * m);
+        }
+
+        for (int i=0;i<n;i++) {
+            //Shortest chain of reassignments ending at each elevator
+            for (int c=0;c<m;c++) {
+                dist[c] = travel[i * m + c] - potential[c];
+                via[c] = -1;
+                settled[c] = false;
+            }
+            while (true) {
+                //Only elevators holding calls can pass one on
+                int a = -1;
+                for (int c=0;c<m;c++) {
+                    if (held[c] > 0 && !settled[c] && (a == -1 || dist[c] < dist[a])) a = c;
+                }
+                if (a == -1) break;
+                settled[a] = true;
+                int row = a * m;
+                int reach = dist[a] + potential[a];
+                for (int b=0;b<m;b++) {
+                    int d = reach + bumpCost[row + b] - potential[b];
+                    if (d < dist[b] && !settled[b]) {
+                        dist[b] = d;
+                        via[b] = bumpCall[row + b];
+                    }
+                }
+            }
+            for (int c=0;c<m;c++) {
+                potential[c] += dist[c];
+            }
+
+            //The chain ends at the elevator that takes on one more stop
+            int end = 0;
+            long best = Long.MAX_VALUE;
+            for (int c=0;c<m;c++) {
+                long cost = (long) potential[c] + load[c] * STOP_COST;
+                if (cost < best) {
+                    best = cost;
+                    end = c;
+                }
+            }
+            load[end]++;
+            held[end]++;
+            int c = end;
+            int length = 0;
+            chain[length++] = c;
+            while (via[c] != -1) {
+                int j = via[c];
+                int from = result[j];
+                result[j] = c;
+                c = from;
+                chain[length++] = c;
+            }
+            result[i] = c;
+
+            //Every elevator on the chain swapped calls, except the end which only gained one
+            for (int k=0;k<length;k++) {
+                rebuildRow(chain[k], i, m);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Recomputes the cheapest call to bump from an elevator to every other
+     * @param a the elevator
+     * @param last last call assigned so far
+     */
+    private void rebuildRow(int a, int last, int m) {
+        int row = a * m;
+        Arrays.fill(bumpCost, row, row + m, Integer.MAX_VALUE / 2);
+        for (int j=0;j<=last;j++) {
+            if (result[j] != a) continue;
+            int t = j * m;
+            for (int b=0;b<m;b++) {
+                int d = travel[t + b] - travel[t + a];
+                if (d < bumpCost[row + b]) {
+                    bumpCost[row + b] = d;
+                    bumpCall[row + b] = j;
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int n, int m) {
+        if (travel.length < n * m) travel = new int[n * m];
+        if (result.length < n) result = new int[Math.max(n, MAX_BATCH)];
+        if (load.length < m) {
+            load = new int[m];
+            held = new int[m];
+            bumpCost = new int[m * m];
+            bumpCall = new int[m * m];
+            chain = new int[m + 1];
+            dist = new int[m];
+            potential = new int[m];
+            via = new int[m];
+            settled = new boolean[m];
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package VirtualGuests;
+
+import java.util.*;
+
+/**
+ * Tracks elevator requests to specific floors at given times using primitive per-floor
+ * arrays. Occupied floors are kept in a bitset so next-stop lookups scan a word (64 floors)
+ * at a time, and no objects are allocated while adding, finding or completing requests.
+ */
+public class BitsetRequestHandler implements RequestHandler {
+    private BitSet occupied; //Floors that have an outstanding request
+    private int[] guests; //Number of guests requested per floor
+    private int[] timestamps; //Timestamp of request per floor
+    private int size; //Number of occupied floors
+    private TimestampIndex byTimestamp; //Requests ordered by timestamp for stationary lookups
+
+    /**
+     * Initializes a new handler with empty set of requests
+     * @param numFloors the highest floor that can be requested
+     */
+    public BitsetRequestHandler(int numFloors) {
+        occupied = new BitSet(numFloors + 1);
+        guests = new int[numFloors + 1];
+        timestamps = new int[numFloors + 1];
+        size = 0;
+        byTimestamp = new TimestampIndex(this::isCurrent);
+    }
+
+    /**
+     * Adds a request to the current set, merging into the floor's request if it has one.
+     * Merging is a couple of array writes, and only touches the timestamp index if the
+     * new request is the earlier one.
+     * @param floor the floor to add
+     * @param timestamp timestamp of action
+     * @param numGuests the number of guests
+     */
+    public void addRequest(int floor, int timestamp, int numGuests) {
+        if (occupied.get(floor)) {
+            guests[floor] = (int) Math.min((long) guests[floor] + numGuests, Integer.MAX_VALUE);
+            if (timestamp < timestamps[floor]) {
+                timestamps[floor] = timestamp;
+                byTimestamp.add(floor, timestamp);
+            }
+            return;
+        }
+        occupied.set(floor);
+        guests[floor] = numGuests;
+        timestamps[floor] = timestamp;
+        size++;
+        byTimestamp.add(floor, timestamp);
+    }
+
+    /**
+     * Checks whether a timestamp index entry still refers to a live request
+     */
+    private boolean isCurrent(int floor, int timestamp) {
+        return occupied.get(floor) && timestamps[floor] == timestamp;
+    }
+
+    public boolean hasRequest(int floor) {
+        return occupied.get(floor);
+    }
+
+    public int getGuests(int floor) {
+        if (!occupied.get(floor)) return 0;
+        return guests[floor];
+    }
+
+    public int getTimestamp(int floor) {
+        if (!occupied.get(floor)) return -1;
+        return timestamps[floor];
+    }
+
+    public boolean completeRequest(int floor) {
+        if (!occupied.get(floor)) return false;
+        occupied.clear(floor);
+        guests[floor] = 0;
+        size--;
+        return true;
+    }
+
+    public int getNextFloor(int currentFloor, int direction) {
+        if (direction < 0) {
+            //First request at or below current floor
+            return occupied.previousSetBit(currentFloor);
+        }
+        else if (direction > 0) {
+            //First request at or above current floor
+            return occupied.nextSetBit(currentFloor);
+        }
+        else {
+            //Earliest request via timestamp index
+            return byTimestamp.peekFloor();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int f = occupied.nextSetBit(0); f >= 0; f = occupied.nextSetBit(f + 1)) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append("Floor: ").append(f).append(" | Guests: ").append(guests[f]);
+        }
+        return sb.append("]").toString();
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
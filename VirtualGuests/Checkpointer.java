@@ -0,0 +1,183 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Periodically saves a running simulation so a long run can be resumed after it dies.
+ * Between frames the stepping thread copies the state into a byte array, which is quick
+ * since nothing touches the disk, and a background thread writes it out. Every checkpoint
+ * goes to a temporary file that then replaces the previous one, so a crash mid-write
+ * leaves the last complete checkpoint in place. If the disk falls behind, only the
+ * newest snapshot is written.
+ *
+ * Format: magic (int), version (short), the Setting, then Dispatcher.writeState, big-endian.
+ */
+public class Checkpointer implements Closeable {
+    public static final int MAGIC = 0x454C434B; //"ELCK"
+    public static final short VERSION = 3;
+
+    private Path path; //Checkpoint file
+    private Path temp; //File being written before it replaces the checkpoint
+    private long interval; //Simulated milliseconds between checkpoints
+    private long nextCheckpoint = -1; //Simulated time of the next checkpoint (stepping thread only)
+    private int lastSize = 1 << 12; //Size of the previous snapshot, to size the next buffer
+    private ExecutorService writer; //Background thread writing snapshots
+    private AtomicReference<byte[]> latest = new AtomicReference<>(); //Snapshot not yet written
+    private AtomicLong written = new AtomicLong(); //Checkpoints written to disk
+    private volatile boolean closed;
+
+    /**
+     * @param path the checkpoint file, replaced by every checkpoint
+     * @param interval simulated milliseconds between checkpoints
+     */
+    public Checkpointer(String path, long interval) {
+        this.path = Paths.get(path);
+        this.temp = Paths.get(path + ".tmp");
+        this.interval = interval;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Snapshots the dispatcher if a checkpoint is due, handing the write to the background
+     * thread. Called by the dispatcher at the end of every frame.
+     * @param dispatcher the dispatcher, between frames
+     */
+    public void afterFrame(Dispatcher dispatcher) {
+        if (closed) return;
+        long time = dispatcher.getTime();
+        if (nextCheckpoint < 0) nextCheckpoint = time + interval;
+        if (time < nextCheckpoint) return;
+        nextCheckpoint = time + interval;
+        try {
+            byte[] snapshot = capture(dispatcher, lastSize);
+            lastSize = snapshot.length;
+            if (latest.getAndSet(snapshot) == null) {
+                writer.execute(this::writeLatest);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Serializes a dispatcher's complete state in memory
+     * @param dispatcher the dispatcher, between frames
+     * @return the snapshot
+     */
+    public static byte[] capture(Dispatcher dispatcher) throws IOException {
+        return capture(dispatcher, 1 << 12);
+    }
+
+    private static byte[] capture(Dispatcher dispatcher, int sizeHint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(sizeHint);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        dispatcher.getSetting().writeState(out);
+        dispatcher.writeState(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Resumes a simulation from a checkpoint file
+     * @param path the checkpoint file
+     * @param source traffic source built the same way as the checkpointed run's
+     * @param log where elevator actions are logged, or null for none
+     * @return a dispatcher in the checkpointed state, using the checkpointed setting
+     */
+    public static Dispatcher restore(String path, TrafficSource source, EventLog log) throws IOException {
+        return restore(Files.readAllBytes(Paths.get(path)), source, log, s -> {});
+    }
+
+    /**
+     * Resumes a simulation from a checkpoint file, changing its setting first
+     * @param path the checkpoint file
+     * @param source traffic source built the same way as the checkpointed run's
+     * @param log where elevator actions are logged, or null for none
+     * @param adjust applied to the checkpointed setting before the dispatcher is built,
+     *               e.g. to size the ingress queue for this run; it must not change the building
+     * @return a dispatcher in the checkpointed state, using the adjusted setting
+     */
+    public static Dispatcher restore(String path, TrafficSource source, EventLog log, Consumer<Setting> adjust) throws IOException {
+        return restore(Files.readAllBytes(Paths.get(path)), source, log, adjust);
+    }
+
+    /**
+     * Resumes a simulation from a snapshot
+     * @param snapshot a snapshot made by capture
+     * @param source traffic source built the same way as the checkpointed run's
+     * @param log where elevator actions are logged, or null for none
+     * @return a dispatcher in the checkpointed state, using the checkpointed setting
+     */
+    public static Dispatcher restore(byte[] snapshot, TrafficSource source, EventLog log) throws IOException {
+        return restore(snapshot, source, log, s -> {});
+    }
+
+    private static Dispatcher restore(byte[] snapshot, TrafficSource source, EventLog log, Consumer<Setting> adjust) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+        if (snapshot.length < 6 || in.readInt() != MAGIC) {
+            throw new IOException("Not an elevator checkpoint");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        Setting setting = Setting.readState(in);
+        adjust.accept(setting);
+        Dispatcher dispatcher = new Dispatcher(setting, source, log);
+        dispatcher.readState(in);
+        return dispatcher;
+    }
+
+    /**
+     * Writes the newest snapshot to the temporary file, forces it to disk, then moves it
+     * over the checkpoint
+     */
+    private void writeLatest() {
+        byte[] snapshot = latest.getAndSet(null);
+        if (snapshot == null) return;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written.incrementAndGet();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Stops taking checkpoints and waits for the last one to reach the disk
+     */
+    public void close() {
+        closed = true;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
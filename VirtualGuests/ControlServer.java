@@ -0,0 +1,345 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Localhost control API taking hall and car calls from any number of clients while the
+ * simulation runs. A single thread multiplexes every connection with a selector and hands
+ * calls to the dispatcher's lock-free ingress queue, so the stepping thread never waits on
+ * a socket and a slow client never holds up the others.
+ *
+ * Protocol: ASCII lines, one command per line, each answered in order with one line:
+ *   H floor guests [destination]   hall call, optionally with the guests' destination
+ *   C elevator floor [guests]      car call from inside an elevator (1 guest by default)
+ * A hall call may name at most as many guests as the whole fleet carries, and a car call at
+ * most one elevator's capacity.
+ * Replies are OK, BUSY when the ingress queue is full and rejects calls (see
+ * Setting.queueBackpressure), or ERR with a reason. Blank lines are ignored. Clients may
+ * pipeline commands; one that stops reading its replies stops being read from until it
+ * catches up.
+ */
+public class ControlServer implements Closeable {
+    private static final int BUFFER_BYTES = 1 << 14; //Per-connection input and output buffers
+    private static final int MAX_REPLY = 32; //Output room needed before running a command
+    private static final int MAX_DIGITS = 9; //Longest number accepted, so parsing can't overflow
+    private static final byte[] OK = ascii("OK\n");
+    private static final byte[] BUSY = ascii("BUSY\n");
+    private static final byte[] ERR_SYNTAX = ascii("ERR syntax\n");
+    private static final byte[] ERR_RANGE = ascii("ERR out of range\n");
+    private static final byte[] ERR_COMMAND = ascii("ERR unknown command\n");
+    private static final byte[] ERR_LENGTH = ascii("ERR line too long\n");
+
+    private Dispatcher dispatcher; //Receiver of the calls
+    private int numFloors; //Highest floor callers may name
+    private int numElevators; //Elevators car calls may name
+    private int carCapacity; //Most guests a car call may name
+    private long fleetCapacity; //Most guests a hall call may name
+    private Selector selector; //Readiness of the listening socket and every connection
+    private ServerSocketChannel server; //Listening socket, bound to the loopback address
+    private Thread thread; //Server thread running the selector loop
+    private volatile boolean running = true;
+    private int[] args = new int[3]; //Arguments of the command being run (server thread only)
+
+    private final LongAdder connections = new LongAdder(); //Clients accepted
+    private final LongAdder accepted = new LongAdder(); //Calls handed to the dispatcher
+    private final LongAdder rejected = new LongAdder(); //Calls refused by a full ingress queue
+    private final LongAdder errors = new LongAdder(); //Malformed or out-of-range commands
+
+    /**
+     * Per-connection buffers: bytes read but not yet run, and replies not yet written
+     */
+    private static class Connection {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+    }
+
+    /**
+     * Binds the server to the loopback address without accepting clients yet
+     * @param dispatcher receiver of the calls
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public ControlServer(Dispatcher dispatcher, int port) throws IOException {
+        this.dispatcher = dispatcher;
+        this.numFloors = dispatcher.getSetting().numFloors;
+        this.numElevators = dispatcher.getNumElevators();
+        this.carCapacity = dispatcher.getSetting().carryingCapacity;
+        this.fleetCapacity = (long) carCapacity * numElevators;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::serve, "control-server");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts accepting clients on the server thread
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Returns the port clients connect to
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the server thread and disconnects every client
+     */
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key: selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Selector loop: accepts clients, runs the commands they send and writes back replies,
+     * until closed. A client whose connection fails is dropped without affecting the rest.
+     */
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        if (key.isValid() && key.isWritable()) resume(key);
+                        if (key.isValid() && key.isReadable()) read(key);
+                    } catch (IOException e) {
+                        disconnect(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) e.printStackTrace();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client = server.accept();
+        if (client == null) return;
+        client.configureBlocking(false);
+        client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        client.register(selector, SelectionKey.OP_READ, new Connection());
+        connections.increment();
+    }
+
+    private void disconnect(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            //Already gone
+        }
+    }
+
+    /**
+     * Reads what the client sent and runs every complete command in it
+     */
+    private void read(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        if (((SocketChannel) key.channel()).read(c.in) < 0) {
+            disconnect(key);
+            return;
+        }
+        process(key);
+    }
+
+    /**
+     * Writes pending replies once the client is reading again, then runs any commands that
+     * were held back while its replies were piling up
+     */
+    private void resume(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        if (write(key, c)) process(key);
+    }
+
+    /**
+     * Runs complete commands while there is room for their replies and writes the replies,
+     * until every complete command has run or the client stops taking replies. In the latter
+     * case the client isn't read from again until its replies are written.
+     */
+    private void process(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        while (true) {
+            boolean held = runCommands(c);
+            if (!write(key, c) || !held) return;
+        }
+    }
+
+    /**
+     * Runs the complete command lines buffered for a client
+     * @return true if some were held back for lack of room for their replies
+     */
+    private boolean runCommands(Connection c) {
+        ByteBuffer in = c.in;
+        in.flip();
+        int start = 0;
+        boolean held = false;
+        for (int i=0;i<in.limit();i++) {
+            if (in.get(i) != '\n') continue;
+            if (c.out.remaining() < MAX_REPLY) {
+                held = true;
+                break;
+            }
+            execute(in, start, i, c.out);
+            start = i + 1;
+        }
+        in.position(start);
+        in.compact();
+        if (!in.hasRemaining() && start == 0) {
+            //A full buffer with no end of line in it
+            errors.increment();
+            c.out.put(ERR_LENGTH);
+            in.clear();
+        }
+        return held;
+    }
+
+    /**
+     * Writes as many pending replies as the socket takes, waiting for it to become writable
+     * (and not reading) while any are left
+     * @return true if every reply was written
+     */
+    private boolean write(SelectionKey key, Connection c) throws IOException {
+        c.out.flip();
+        ((SocketChannel) key.channel()).write(c.out);
+        c.out.compact();
+        boolean done = c.out.position() == 0;
+        key.interestOps(done ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+        return done;
+    }
+
+    /**
+     * Runs one command line and appends its reply
+     * @param in buffer holding the line
+     * @param from index of the line's first byte
+     * @param to index of its end of line
+     * @param out replies to the client
+     */
+    private void execute(ByteBuffer in, int from, int to, ByteBuffer out) {
+        int p = skipSpaces(in, from, to);
+        if (p == to) return; //Blank line
+        byte command = in.get(p++);
+        int n = 0;
+        while (true) {
+            p = skipSpaces(in, p, to);
+            if (p == to) break;
+            if (n == args.length) {
+                reply(out, ERR_SYNTAX);
+                return;
+            }
+            int value = 0;
+            int digits = 0;
+            for (;p<to && in.get(p) >= '0' && in.get(p) <= '9';p++) {
+                value = value * 10 + (in.get(p) - '0');
+                digits++;
+            }
+            if (digits == 0 || digits > MAX_DIGITS || (p < to && !isSpace(in.get(p)))) {
+                reply(out, ERR_SYNTAX);
+                return;
+            }
+            args[n++] = value;
+        }
+
+        switch (command) {
+            case 'H': case 'h': {
+                if (n < 2) {
+                    reply(out, ERR_SYNTAX);
+                    return;
+                }
+                int floor = args[0], guests = args[1], destination = n > 2 ? args[2] : -1;
+                if (!isFloor(floor) || guests < 1 || guests > fleetCapacity || (n > 2 && (!isFloor(destination) || destination == floor))) {
+                    reply(out, ERR_RANGE);
+                    return;
+                }
+                offered(out, dispatcher.addPickup(floor, guests, destination));
+                return;
+            }
+            case 'C': case 'c': {
+                if (n < 2) {
+                    reply(out, ERR_SYNTAX);
+                    return;
+                }
+                int elevator = args[0], floor = args[1], guests = n > 2 ? args[2] : 1;
+                if (elevator >= numElevators || !isFloor(floor) || guests < 1 || guests > carCapacity) {
+                    reply(out, ERR_RANGE);
+                    return;
+                }
+                offered(out, dispatcher.addDropoff(elevator, floor, guests));
+                return;
+            }
+            default:
+                reply(out, ERR_COMMAND);
+        }
+    }
+
+    private void offered(ByteBuffer out, boolean queued) {
+        if (queued) accepted.increment();
+        else rejected.increment();
+        out.put(queued ? OK : BUSY);
+    }
+
+    private void reply(ByteBuffer out, byte[] error) {
+        errors.increment();
+        out.put(error);
+    }
+
+    private boolean isFloor(int floor) {
+        return floor >= 1 && floor <= numFloors;
+    }
+
+    private static int skipSpaces(ByteBuffer in, int p, int to) {
+        while (p < to && isSpace(in.get(p))) p++;
+        return p;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,188 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Online model of where hall calls come from, used to park idle elevators where the next
+ * call is likely. Demand is kept two ways with exponential smoothing: a recent rate per
+ * floor that decays continuously, and a rate per floor for every time-of-day bucket that
+ * is smoothed across days, so the morning lobby rush is anticipated from the second day on.
+ * Recording a call is O(1); smoothing a bucket into the daily profile happens once per bucket.
+ */
+public class DemandModel {
+    private static final long BUCKET = 15 * 60_000; //Time-of-day resolution (ms)
+    private static final int BUCKETS_PER_DAY = (int) (24 * 3_600_000 / BUCKET);
+    private static final double DAILY_ALPHA = 0.3; //Weight of the latest day in each bucket's rate
+    private static final double RECENT_TAU = BUCKET; //Decay time constant of the recent rate (ms)
+    private static final int MAX_CANDIDATES = 64; //Parking floors evaluated in tall buildings
+
+    private int numFloors; //Highest floor
+    private double[] recent; //Decayed calls per floor as of recentTime
+    private long[] recentTime; //Time each floor's recent rate was last decayed to
+    private double[][] daily; //Smoothed calls per [bucket of day][floor]
+    private int[] bucketCounts; //Calls per floor in the current bucket
+    private long currentBucket; //Index of the current bucket since time 0
+    private int daysSeen; //Whole days of history in the daily profile
+
+    private double[] demand; //Scratch: expected calls per floor at demandTime
+    private long demandTime = -1;
+    private int[] coverage; //Scratch: distance from each floor to the nearest other parked elevator
+    private Integer[] candidates; //Scratch: floors ordered by demand
+
+    /**
+     * @param numFloors the highest floor calls can come from
+     */
+    public DemandModel(int numFloors) {
+        this.numFloors = numFloors;
+        recent = new double[numFloors + 1];
+        recentTime = new long[numFloors + 1];
+        daily = new double[BUCKETS_PER_DAY][numFloors + 1];
+        bucketCounts = new int[numFloors + 1];
+        demand = new double[numFloors + 1];
+        coverage = new int[numFloors + 1];
+        candidates = new Integer[numFloors];
+    }
+
+    /**
+     * Records a hall call
+     * @param floor the calling floor
+     * @param time simulated time of the call
+     */
+    public void record(int floor, long time) {
+        roll(time);
+        recent[floor] = decayed(floor, time) + 1;
+        recentTime[floor] = time;
+        bucketCounts[floor]++;
+        demandTime = -1;
+    }
+
+    /**
+     * Expected calls from a floor over the next bucket. Blends the recent rate with the
+     * daily profile once a full day has been seen.
+     * @param floor the floor
+     * @param time current simulated time
+     */
+    public double getDemand(int floor, long time) {
+        double now = decayed(floor, time);
+        if (daysSeen == 0) return now;
+        int bucket = (int) ((time / BUCKET) % BUCKETS_PER_DAY);
+        return 0.5 * now + 0.5 * daily[bucket][floor];
+    }
+
+    /**
+     * Picks where an idle elevator should wait: the floor minimizing expected distance to the
+     * next call, given that calls closer to another parked elevator will be served by it
+     * @param time current simulated time
+     * @param parked floors of the other idle elevators
+     * @param numParked number of entries of parked in use
+     * @param fallback floor to use while there is no demand to go on
+     * @return the parking floor
+     */
+    public int getParkingFloor(long time, int[] parked, int numParked, int fallback) {
+        roll(time);
+        if (demandTime != time) {
+            for (int f=1;f<=numFloors;f++) demand[f] = getDemand(f, time);
+            demandTime = time;
+        }
+
+        //Distance from every floor to the nearest other parked elevator, two sweeps
+        Arrays.fill(coverage, Integer.MAX_VALUE / 2);
+        for (int i=0;i<numParked;i++) coverage[parked[i]] = 0;
+        for (int f=1;f<=numFloors;f++) coverage[f] = Math.min(coverage[f], coverage[f - 1] + 1);
+        for (int f=numFloors-1;f>=1;f--) coverage[f] = Math.min(coverage[f], coverage[f + 1] + 1);
+
+        //Busiest floors are the only candidates in tall buildings
+        int numCandidates = numFloors;
+        for (int f=1;f<=numFloors;f++) candidates[f - 1] = f;
+        if (numFloors > MAX_CANDIDATES) {
+            Arrays.sort(candidates, (a, b) -> Double.compare(demand[b], demand[a]));
+            numCandidates = MAX_CANDIDATES;
+        }
+
+        int best = fallback;
+        double bestCost = Double.MAX_VALUE;
+        double total = 0;
+        for (int f=1;f<=numFloors;f++) total += demand[f];
+        if (total <= 0) return fallback;
+        for (int i=0;i<numCandidates;i++) {
+            int p = candidates[i];
+            double cost = 0;
+            for (int f=1;f<=numFloors;f++) {
+                cost += demand[f] * Math.min(Math.abs(f - p), coverage[f]);
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes the learned demand to a checkpoint
+     * @param out the checkpoint
+     */
+    public void writeState(DataOutput out) throws IOException {
+        for (int f=1;f<=numFloors;f++) {
+            out.writeDouble(recent[f]);
+            out.writeLong(recentTime[f]);
+            out.writeInt(bucketCounts[f]);
+        }
+        for (double[] rates: daily) {
+            for (int f=1;f<=numFloors;f++) out.writeDouble(rates[f]);
+        }
+        out.writeLong(currentBucket);
+        out.writeInt(daysSeen);
+    }
+
+    /**
+     * Replaces the learned demand with that read from a checkpoint
+     * @param in the checkpoint
+     */
+    public void readState(DataInput in) throws IOException {
+        for (int f=1;f<=numFloors;f++) {
+            recent[f] = in.readDouble();
+            recentTime[f] = in.readLong();
+            bucketCounts[f] = in.readInt();
+        }
+        for (double[] rates: daily) {
+            for (int f=1;f<=numFloors;f++) rates[f] = in.readDouble();
+        }
+        currentBucket = in.readLong();
+        daysSeen = in.readInt();
+        demandTime = -1;
+    }
+
+    /**
+     * Recent rate of a floor decayed to a time
+     */
+    private double decayed(int floor, long time) {
+        long elapsed = time - recentTime[floor];
+        if (elapsed <= 0 || recent[floor] == 0) return recent[floor];
+        return recent[floor] * Math.exp(-elapsed / RECENT_TAU);
+    }
+
+    /**
+     * Smooths finished buckets into the daily profile
+     */
+    private void roll(long time) {
+        long bucket = time / BUCKET;
+        if (bucket <= currentBucket) return;
+        int slot = (int) (currentBucket % BUCKETS_PER_DAY);
+        boolean firstDay = currentBucket < BUCKETS_PER_DAY;
+        for (int f=1;f<=numFloors;f++) {
+            if (firstDay) daily[slot][f] = bucketCounts[f];
+            else daily[slot][f] += DAILY_ALPHA * (bucketCounts[f] - daily[slot][f]);
+            bucketCounts[f] = 0;
+        }
+        //Buckets skipped entirely had no calls
+        for (long b=Math.max(currentBucket+1, BUCKETS_PER_DAY);b<bucket && b<currentBucket+1+BUCKETS_PER_DAY;b++) {
+            double[] rates = daily[(int) (b % BUCKETS_PER_DAY)];
+            for (int f=1;f<=numFloors;f++) rates[f] -= DAILY_ALPHA * rates[f];
+        }
+        daysSeen = (int) Math.min(Integer.MAX_VALUE, bucket / BUCKETS_PER_DAY);
+        currentBucket = bucket;
+        demandTime = -1;
+    }
+}
@@ -1,17 +1,119 @@
 package VirtualGuests;
 
+import java.io.*;
 import java.util.*;
+import java.util.stream.*;
 
 public class Dispatcher {
+    private static final int DESTINATION_STOP_COST = 10; //Floors of travel worth saving a stop for
+    private static final long PARKING_INTERVAL = 60_000; //How often a waiting elevator reconsiders where to park (ms)
     private Elevator[] elevators;
-    private Queue<Request> requestQueue;
+    private FleetState fleet; //Floor, direction, load and requests of every elevator, in dense columns
+    private RequestRing requestQueue; //Hall and car calls from any thread, drained by the stepping thread
+    private ArrayDeque<Request> backlog; //Hall calls awaiting assignment (stepping thread only)
+    private EventScheduler scheduler; //Virtual clock for discrete-event mode
+    private ElevatorIndex index; //Elevators keyed by floor and direction
+    private PickupScorer scorer; //Scores the whole fleet for each hall call, or null to use the index
+    private BatchAssigner assigner; //Matches queued hall calls to elevators together
+    private ArrayList<Request> batch; //Hall calls being matched by the assigner
+    private ArrayList<Request> leftover; //Parts of batched calls that didn't fit their elevator
+    private int[] available; //Ids of elevators with room, the ones a batch is matched against
+    private int[] travel; //Scratch: travel cost of every elevator to a hall call
+    private DemandModel demand; //Where hall calls come from, by floor and time of day
+    private int[] parking; //Floor each elevator waits at once idle
+    private long[] parkedSince; //When each elevator's parking floor was last chosen, or -1 while busy
+    private int[] parked; //Parking floors of the other idle elevators, scratch for choosing one
+    private ArrayList<ArrayList<Request>> overflow; //Pick-ups dumped back by each elevator this tick
+    private ArrayList<Event> due; //Events being dispatched this tick
+    private Event[] pending; //Live scheduled update of each elevator; any other event for it is stale
+    private BitSet waiting; //Parked elevators, not updated again until woken
+    private Event arrivals; //Poll of the traffic source at its next hall call
+    private boolean arrivalsScheduled; //Whether the poll is in the schedule
+    private Checkpointer checkpointer; //Saves the simulation periodically, or null
+    private long lastFrame; //Simulated time of the previous frame
+    private boolean[] idle; //Whether each due elevator reached steady-state this tick
+    private TrafficSource source; //Generator of virtual guests
+    private Statistics statistics; //Running totals of the simulation
+    private EventLog log; //Log of every elevator action, or null if not verbose
+    private Setting setting; //Configuration of this simulation
 
     public Dispatcher() {
-        elevators = new Elevator[1 + (int) (Math.log(Setting.NUM_FLOORS / 5) / Math.log(2))];
+        this(new Setting());
+    }
+
+    private Dispatcher(Setting setting) {
+        this(setting, new Simulator(setting), true);
+    }
+
+    /**
+     * Initializes a dispatcher whose virtual guests are reproducible
+     * @param setting configuration of the simulation
+     * @param seed seed for the guest generator
+     * @param verbose whether to print every elevator action
+     */
+    public Dispatcher(Setting setting, long seed, boolean verbose) {
+        this(setting, new Simulator(setting, seed), verbose);
+    }
+
+    /**
+     * Initializes a dispatcher fed by any automatic traffic source
+     * @param setting configuration of the simulation
+     * @param source generator of pick-up and drop-off requests
+     * @param verbose whether to print every elevator action
+     */
+    public Dispatcher(Setting setting, TrafficSource source, boolean verbose) {
+        this(setting, source, verbose ? EventLog.console() : null);
+    }
+
+    /**
+     * Initializes a dispatcher that logs every elevator action to a given event log
+     * @param setting configuration of the simulation
+     * @param source generator of pick-up and drop-off requests
+     * @param log where elevator actions are logged, or null for none
+     */
+    public Dispatcher(Setting setting, TrafficSource source, EventLog log) {
+        this.setting = setting;
+        this.source = source;
+        this.log = log;
+        this.statistics = new Statistics();
+        elevators = new Elevator[setting.getNumElevators()];
+        fleet = new FleetState(elevators.length, setting.numFloors);
+        scheduler = new EventScheduler();
+        index = new ElevatorIndex(setting.numFloors, fleet);
+        if (setting.fleetScoring) {
+            if (setting.numFloors > PickupScorer.MAX_FLOORS) {
+                throw new IllegalArgumentException("Fleet scoring supports at most " + PickupScorer.MAX_FLOORS + " floors");
+            }
+            scorer = PickupScorer.load();
+        }
+        assigner = new BatchAssigner();
+        batch = new ArrayList<>();
+        leftover = new ArrayList<>();
+        overflow = new ArrayList<>();
+        for (int i=0;i<elevators.length;i++) {
+            overflow.add(new ArrayList<>());
+        }
+        due = new ArrayList<>();
+        idle = new boolean[elevators.length];
+        available = new int[elevators.length];
+        travel = new int[elevators.length];
+        demand = new DemandModel(setting.numFloors);
+        parking = new int[elevators.length];
+        Arrays.fill(parking, setting.numFloors / 2);
+        parkedSince = new long[elevators.length];
+        Arrays.fill(parkedSince, -1);
+        parked = new int[elevators.length];
+        pending = new Event[elevators.length];
+        waiting = new BitSet(elevators.length);
         for (int i=0;i<elevators.length;i++) {
             elevators[i] = new Elevator(this, i);
+            //Construction already performed the first action, so next update is one timestep out
+            pending[i] = scheduler.schedule(elevators[i], setting.simulTimestep);
         }
-        requestQueue = new LinkedList<>();
+        requestQueue = new RequestRing(setting.requestQueueCapacity, setting.queueBackpressure);
+        backlog = new ArrayDeque<>();
+        arrivals = new Event(0, null);
+        scheduleArrivals(0);
     }
     
     /**
@@ -22,10 +124,10 @@ public class Dispatcher {
     public void promptDropoff(Elevator e) {
         Vector<Integer> dropoffFloors;
         Vector<Integer> guestCount;
-        if (!Setting.AUTO_REQUESTS) {
+        if (!setting.autoRequests) {
             //Prompt user for drop-off floors 
             String dropoffPrompt = "What floor(s) would you like to call drop off for elevator " + e.getId();
-            dropoffFloors = TextPrompt.promptSequence(dropoffPrompt, 1, Setting.NUM_FLOORS, " ");
+            dropoffFloors = TextPrompt.promptSequence(dropoffPrompt, 1, setting.numFloors, " ");
             
             int guestSum = 0;
             do {
@@ -52,7 +154,7 @@ public class Dispatcher {
             //Automatically populate dropoff requests
             dropoffFloors = new Vector<>();
             guestCount = new Vector<>();
-            for (Request r: Simulator.generateDropoffs(e)) {
+            for (Request r: source.generateDropoffs(e, getTime())) {
                 dropoffFloors.add(r.floor);
                 guestCount.add(r.numGuests);
             }
@@ -68,56 +170,82 @@ public class Dispatcher {
 
     /**
      * Calculates which elevator to assign pick-up request to based on transit direction and proximity.
-     * Essentially, we find the closest elevator traveling toward the target floor. If there's a
-     * tie, then we pick the elevator with the lesser requests.
+     * Essentially, we find the closest elevator with room traveling toward the target floor. If there's
+     * a tie, then we pick the elevator with the lesser requests. The elevator index answers this
+     * by scanning outward from the target floor, so cost doesn't grow with the fleet size.
+     * With fleetScoring set, every elevator is scored instead, in SIMD when the vector module
+     * is available, which makes the same choice.
+     * @return the chosen elevator, or null if every elevator is full
      */
     public Elevator assignPickup(Request r) {
-        int f = r.floor;
-
-        //Calculate which elevator to assign each floor to
-        Elevator best = elevators[0];
-        int closestDist = Integer.MAX_VALUE;
-        boolean bestMatchesDir = false;
-        int minRequests = Integer.MAX_VALUE;
-        for (Elevator e: elevators) {
-            int dist = f - e.getFloor();
-            int unitVec = (dist == 0) ? 0 : dist / Math.abs(dist);
-            boolean matchesDir = unitVec == e.getDirection();
-            int numRequests = e.getNumRequests();
-            //Order by direction
-            if (matchesDir || !bestMatchesDir) {
-                bestMatchesDir = matchesDir;
-                //Order by distance
-                if (dist < closestDist) {
-                    best = e;
-                    closestDist = dist;
-                    minRequests = numRequests;
-                }
-                else if (dist == closestDist) {
-                    //Order by number of requests
-                    if (numRequests < minRequests) {
-                        best = e;
-                        minRequests = numRequests;
-                    }
-                }
+        if (scorer != null) {
+            int id = scorer.choose(fleet, r.floor);
+            return id < 0 ? null : elevators[id];
+        }
+        synchronized (index) {
+            return index.closest(r.floor);
+        }
+    }
+
+    /**
+     * Picks the elevator for guests who called with their destination. Besides travel to the
+     * pick-up floor, each of the two stops the elevator doesn't already make costs extra,
+     * so guests headed to the same floors ride together and trips make fewer stops.
+     * Ties go to the elevator with the fewest requests, then the lowest id.
+     * Travel is scored for the whole fleet from the fleet state first, and only elevators
+     * that travel no further than the best so far have their stops looked up.
+     * @param r the hall call, with a destination
+     * @return the chosen elevator, or null if every elevator is full
+     */
+    public Elevator assignDestination(Request r) {
+        fleet.travelCosts(r.floor, travel);
+        int best = -1;
+        int bestCost = Integer.MAX_VALUE;
+        for (int i=0;i<elevators.length;i++) {
+            if (fleet.getFreeCapacity(i) <= 0 || travel[i] > bestCost) continue;
+            int cost = travel[i];
+            if (!elevators[i].stopsAt(r.floor)) cost += DESTINATION_STOP_COST;
+            if (!elevators[i].stopsAt(r.destination)) cost += DESTINATION_STOP_COST;
+            if (cost < bestCost || (cost == bestCost && fleet.getNumRequests(i) < fleet.getNumRequests(best))) {
+                best = i;
+                bestCost = cost;
             }
         }
+        return best < 0 ? null : elevators[best];
+    }
 
-        return best;
+    /**
+     * Updates the elevator index after an elevator changes floor or direction
+     * @param e the elevator that moved
+     * @param oldFloor floor before the move, or -1 if newly created
+     * @param oldDirection direction before the move
+     */
+    public void trackMove(Elevator e, int oldFloor, int oldDirection) {
+        synchronized (index) {
+            if (oldFloor == -1) {
+                index.add(e);
+            }
+            else {
+                index.move(e, oldFloor, oldDirection);
+            }
+        }
     }
+
     /**
      * Prompts users floors to pick-up from. Because there is no specified elevator, the dispatcher
      * employs a scheduling strategy to assign requests to elevators. Requests are first
-     * stored within a queue and then paired one-by-one with elevators.
+     * stored within a queue and then paired with elevators at the end of the tick.
      */
     public void promptPickup() {
         Vector<Integer> pickupFloors;
         Vector<Integer> guestCount;
+        Vector<Long> callTimes = new Vector<>(); //Arrival times, when the source knows them
+        Vector<Integer> destinations = new Vector<>(); //Destinations, when the source knows them
 
-        if (!Setting.AUTO_REQUESTS) {
+        if (!setting.autoRequests) {
             //Prompt user for pick-up floors
             String pickupPrompt = "What floor(s) would you like to call pick up?";
-            pickupFloors = TextPrompt.promptSequence(pickupPrompt, 1, Setting.NUM_FLOORS, " ");
+            pickupFloors = TextPrompt.promptSequence(pickupPrompt, 1, setting.numFloors, " ");
             String guestPrompt = "How many guests per pick-up request?";
             guestCount = TextPrompt.promptSequence(guestPrompt, 1, Integer.MAX_VALUE, " ");
             
@@ -132,9 +260,11 @@ public class Dispatcher {
             pickupFloors = new Vector<>();
             guestCount = new Vector<>();
 
-            for (Request r: Simulator.generatePickups()) {
+            for (Request r: source.generatePickups(getTime())) {
                 pickupFloors.add(r.floor);
                 guestCount.add(r.numGuests);
+                callTimes.add(r.callTime >= 0 ? r.callTime : getTime());
+                destinations.add(r.destination);
             }
         }
 
@@ -142,47 +272,514 @@ public class Dispatcher {
         for (int i=0;i<pickupFloors.size();i++) {
             int f = pickupFloors.get(i);
             int num = guestCount.get(i);
-            requestQueue.add(new Request(f, -1, num));
+            long callTime = i < callTimes.size() ? callTimes.get(i) : getTime();
+            int destination = i < destinations.size() ? destinations.get(i) : -1;
+            queueCall(new Request(f, -1, num, callTime, destination));
+        }
+    }
+
+    /**
+     * Queues a new hall call for assignment, learning from it where demand is
+     * @param r the hall call
+     */
+    private void queueCall(Request r) {
+        backlog.add(r);
+        demand.record(r.floor, getTime());
+    }
+
+    /**
+     * Takes in a call from another thread: hall calls join the backlog, and car calls are
+     * given straight to their elevator
+     * @param r the call
+     */
+    private void intake(Request r) {
+        if (r.elevator < 0) {
+            queueCall(r);
+            return;
+        }
+        Elevator e = elevators[r.elevator];
+        e.addDropoff(r.floor, r.numGuests);
+        wake(e);
+    }
+
+    /**
+     * Takes in requests from other threads, then pairs queued requests one-by-one with elevators
+     * that have room. Groups larger than an elevator's free capacity are split across the fleet,
+     * and requests no elevator has room for stay queued until one does. Requests that know
+     * their destination have both stops planned by the elevator they are given.
+     */
+    private void assignBacklog() {
+        requestQueue.drain(this::intake, setting.requestQueueCapacity);
+        if (setting.batchAssignment && !setting.destinationDispatch) {
+            assignBatches();
+            return;
+        }
+        while (!backlog.isEmpty()) {
+            Request cur = backlog.peek();
+            boolean routed = setting.destinationDispatch && cur.destination >= 0;
+            Elevator best = routed ? assignDestination(cur) : assignPickup(cur);
+            if (best == null) return; //Every elevator is full
+            backlog.poll();
+            int take = Math.min(cur.numGuests, best.getFreeCapacity());
+            best.addPickup(cur.floor, take, cur.callTime, cur.destination);
+            wake(best);
+            if (take < cur.numGuests) {
+                backlog.addFirst(new Request(cur.floor, -1, cur.numGuests - take, cur.callTime, cur.destination));
+            }
         }
+    }
+
+    /**
+     * Assigns queued requests in batches, so calls compete for elevators together instead
+     * of each going to whichever elevator is closest at the time. Only elevators with room
+     * take part, and the part of a group that doesn't fit is queued for the next round.
+     */
+    private void assignBatches() {
+        while (!backlog.isEmpty()) {
+            int open = fleet.collectAvailable(available);
+            if (open == 0) return; //Every elevator is full
 
-        //Process requests in queue
-        while (!requestQueue.isEmpty()) {
-            Request cur = requestQueue.peek();
-            Elevator best = assignPickup(cur);
-            best.addPickup(cur.floor, cur.numGuests);
-            requestQueue.poll();
+            batch.clear();
+            while (!backlog.isEmpty() && batch.size() < BatchAssigner.MAX_BATCH) {
+                batch.add(backlog.poll());
+            }
+            int[] chosen = assigner.assign(batch, fleet, available, open);
+            for (int i=0;i<batch.size();i++) {
+                Request r = batch.get(i);
+                Elevator e = elevators[available[chosen[i]]];
+                int take = Math.min(r.numGuests, e.getFreeCapacity());
+                if (take > 0) {
+                    e.addPickup(r.floor, take, r.callTime, r.destination);
+                    wake(e);
+                }
+                if (take < r.numGuests) {
+                    leftover.add(new Request(r.floor, -1, r.numGuests - take, r.callTime, r.destination));
+                }
+            }
+            for (int i=leftover.size()-1;i>=0;i--) {
+                backlog.addFirst(leftover.get(i));
+            }
+            leftover.clear();
         }
     }
 
     /**
-     * Adds a pick-up request back into dispatcher queue, presumably dumped by
-     * elevator after max capacity reached.
+     * Adds a pick-up request into dispatcher queue. Safe to call from any thread, and
+     * lock-free unless the queue is full (see Setting.queueBackpressure).
+     * @param floor the floor for pick-up
+     * @param numGuests the number of guests
+     * @return true if queued, false if rejected by backpressure
+     */
+    public boolean addPickup(int floor, int numGuests) {
+        return addPickup(floor, numGuests, -1);
+    }
+
+    /**
+     * Adds a pick-up request for guests who entered their destination at the hall
+     * @param floor the floor for pick-up
+     * @param numGuests the number of guests
+     * @param destination the floor the guests are headed to, or -1 if unknown
+     * @return true if queued, false if rejected by backpressure
+     */
+    public boolean addPickup(int floor, int numGuests, int destination) {
+        return requestQueue.offer(new Request(floor, -1, numGuests, getTime(), destination));
+    }
+
+    /**
+     * Adds a drop-off request made from inside an elevator. Safe to call from any thread,
+     * like addPickup; the elevator gets it when the stepping thread next drains the queue.
+     * @param elevator id of the elevator
+     * @param floor the floor to drop off to
+     * @param numGuests the number of guests getting off there
+     * @return true if queued, false if rejected by backpressure
+     */
+    public boolean addDropoff(int elevator, int floor, int numGuests) {
+        Request r = new Request(floor, -1, numGuests, getTime());
+        r.elevator = elevator;
+        return requestQueue.offer(r);
+    }
+
+    /**
+     * Takes back a pick-up request dumped by elevator after max capacity reached.
+     * Each elevator only writes to its own buffer, so this is safe during parallel
+     * stepping; buffers are merged into the queue in elevator id order after the tick.
+     * @param e the elevator dumping the request
      * @param floor the floor for pick-up
      * @param numGuests the number of guests
+     * @param callTime when the guests first called, so their wait keeps counting
+     * @param destination the floor the guests are headed to, or -1 if unknown
      */
-    public void addPickup(int floor, int numGuests) {
-        requestQueue.add(new Request(floor, -1, numGuests));
+    public void returnPickup(Elevator e, int floor, int numGuests, long callTime, int destination) {
+        overflow.get(e.getId()).add(new Request(floor, -1, numGuests, callTime, destination));
     }
 
     /**
-     * Steps through next frame in the elevator simulation, calling update on all elevators
-     * in sequence and prompting user if necessary
+     * Steps through next frame in the elevator simulation, calling update on the elevators
+     * due and prompting user if necessary.
+     * A frame is every event at the earliest scheduled time, and the virtual clock jumps
+     * straight there. Elevators first all move (concurrently if parallelStepping is set),
+     * then after that barrier the dumped pick-ups and idle prompts are handled in elevator
+     * id order, so a parallel frame makes the same decisions as a sequential one.
+     *
+     * Elevators parked with nothing to do leave the schedule and wait until a request is
+     * assigned to them, while the traffic source is polled on its own at its next hall call,
+     * so a frame costs the active elevators only and a quiet building has almost no frames.
      */
     public void step() {
-        for (Elevator e: elevators) {
-            boolean madeUpdate = e.update(); //Is elevator in steady state?
-            if (!madeUpdate) {
-                System.out.println(e);
-
-                System.out.println("Dispatcher Request Queue:");
-                for (Request r: requestQueue) {
-                    System.out.println(r);
+        if (scheduler.isEmpty()) return;
+        long tick = scheduler.peekTime();
+        due.clear();
+        boolean polled = false;
+        boolean intake = false;
+        while (!scheduler.isEmpty() && scheduler.peekTime() == tick) {
+            Event ev = scheduler.poll();
+            if (ev.elevator == null) {
+                if (ev == arrivals) {
+                    polled = true;
+                    arrivalsScheduled = false;
                 }
+                else intake = true;
+            }
+            else if (ev == pending[ev.elevator.getId()]) {
+                waiting.clear(ev.elevator.getId());
+                due.add(ev);
+            } //Otherwise a stale update of an elevator woken early
+        }
+        if (due.isEmpty() && !polled && !intake) return; //Nothing but stale updates
+        statistics.recordTick(tick - lastFrame);
+        lastFrame = tick;
 
-                promptDropoff(e);
-                promptPickup();
+        //Move every due elevator
+        if (setting.parallelStepping) {
+            IntStream.range(0, due.size()).parallel().forEach(this::updateDue);
+        }
+        else {
+            for (int i=0;i<due.size();i++) {
+                updateDue(i);
+            }
+        }
+
+        //Collect dumped pick-ups in a fixed order
+        for (Event ev: due) {
+            ArrayList<Request> dumped = overflow.get(ev.elevator.getId());
+            backlog.addAll(dumped);
+            dumped.clear();
+        }
+
+        //Prompt for idle elevators and queue their next update, or park them
+        boolean canWait = canWait();
+        for (int i=0;i<due.size();i++) {
+            Event ev = due.get(i);
+            Elevator e = ev.elevator;
+            if (idle[i]) {
+                promptIdle(e);
+                chooseParking(e);
+            }
+            else parkedSince[e.getId()] = -1;
+            if (idle[i] && canWait && e.getNumRequests() == 0 && e.getFloor() == parking[e.getId()]) {
+                park(ev, tick);
+            }
+            else {
+                scheduler.reschedule(ev, tick + setting.simulTimestep);
             }
         }
+
+        //Collect hall calls that arrived while every elevator may have been waiting
+        if (polled) {
+            promptPickup();
+            scheduleArrivals(tick);
+        }
+
+        //Hand queued requests to elevators with room every tick, not only when one goes idle
+        assignBacklog();
+        statistics.recordQueueDepth(backlog.size() + requestQueue.getSize());
+        if (checkpointer != null) checkpointer.afterFrame(this);
+    }
+
+    /**
+     * Advances the i-th due elevator by one action, recording whether it is idle
+     * @param i position in this tick's due events
+     */
+    private void updateDue(int i) {
+        idle[i] = !due.get(i).elevator.update(); //Is elevator in steady state?
+    }
+
+    /**
+     * Checks whether idle elevators may leave the schedule. Guests typed in by hand, or
+     * generated by a source that can't say when they arrive, only come in when an elevator
+     * is prompted, so idle elevators then keep being updated every timestep.
+     */
+    private boolean canWait() {
+        return setting.autoRequests && source.nextArrivalTime(getTime()) >= 0;
+    }
+
+    /**
+     * Takes a parked elevator out of the schedule. With demand parking it is still updated
+     * every PARKING_INTERVAL, to move if the best place to wait has changed.
+     * @param ev the elevator's dispatched event
+     * @param tick time of the current frame
+     */
+    private void park(Event ev, long tick) {
+        waiting.set(ev.elevator.getId());
+        if (setting.demandParking) {
+            scheduler.reschedule(ev, alignToTick(tick + PARKING_INTERVAL));
+        }
+    }
+
+    /**
+     * Puts a parked elevator back in the schedule for the next frame, after a request was
+     * assigned to it. Its parking update, if any, is left in the queue and skipped as stale.
+     * @param e the elevator
+     */
+    private void wake(Elevator e) {
+        if (!waiting.get(e.getId())) return;
+        waiting.clear(e.getId());
+        pending[e.getId()] = scheduler.schedule(e, getTime() + setting.simulTimestep);
+    }
+
+    /**
+     * Schedules the next poll of the traffic source, if it knows when its next hall call comes
+     * @param time time of the current frame
+     */
+    private void scheduleArrivals(long time) {
+        if (!setting.autoRequests) return;
+        long next = source.nextArrivalTime(time);
+        if (next < 0 || next == Long.MAX_VALUE) return;
+        scheduler.reschedule(arrivals, alignToTick(Math.max(next, time + 1)));
+        arrivalsScheduled = true;
+    }
+
+    /**
+     * Rounds a time up to the next frame boundary, so polls and parked elevators share
+     * frames with the rest of the fleet
+     */
+    private long alignToTick(long time) {
+        long step = setting.simulTimestep;
+        return (time + step - 1) / step * step;
+    }
+
+    /**
+     * Logs state of an idle elevator and prompts for new requests
+     * @param e the idle elevator
+     */
+    private void promptIdle(Elevator e) {
+        if (EventLog.LEVEL >= EventLog.STATE && log != null) {
+            long time = getTime();
+            log.record(EventLog.IDLE, time, e.getId(), e.getFloor(), e.getCapacity());
+            for (Request r: backlog) {
+                log.record(EventLog.QUEUED, time, -1, r.floor, r.numGuests);
+            }
+            requestQueue.forEach(r -> {
+                if (r.elevator < 0) log.record(EventLog.QUEUED, time, -1, r.floor, r.numGuests);
+            });
+        }
+
+        promptDropoff(e);
+        promptPickup();
+    }
+
+    /**
+     * Picks the floor an idle elevator waits at: where it is expected to be closest to the
+     * next hall call, leaving the floors near other idle elevators to them. Chosen when the
+     * elevator goes idle and reconsidered every PARKING_INTERVAL while it waits, so demand
+     * shifts are followed without chasing every call. Runs after the barrier in elevator id
+     * order, so parking is the same in parallel and sequential frames.
+     * @param e the idle elevator
+     */
+    private void chooseParking(Elevator e) {
+        long since = parkedSince[e.getId()];
+        if (since >= 0 && getTime() - since < PARKING_INTERVAL) return;
+        parkedSince[e.getId()] = getTime();
+        int fallback = setting.numFloors / 2;
+        if (!setting.demandParking) {
+            parking[e.getId()] = fallback;
+            return;
+        }
+        int numParked = 0;
+        for (int i=0;i<elevators.length;i++) {
+            if (i != e.getId() && fleet.getNumRequests(i) == 0) parked[numParked++] = parking[i];
+        }
+        parking[e.getId()] = demand.getParkingFloor(getTime(), parked, numParked, fallback);
+    }
+
+    /**
+     * Returns the floor an elevator should wait at when it has no requests
+     * @param e the elevator
+     * @return the parking floor
+     */
+    public int getParkingFloor(Elevator e) {
+        return parking[e.getId()];
+    }
+
+    /**
+     * Steps until every event up to a simulated time has been dispatched
+     * @param time simulated time in milliseconds
+     */
+    public void runUntil(long time) {
+        while (!scheduler.isEmpty() && scheduler.peekTime() <= time) {
+            step();
+        }
+        //Requests from other threads get a frame of their own if nothing else is due
+        if (requestQueue.getSize() > 0 && time > getTime()) {
+            scheduler.schedule(null, time);
+            step();
+        }
+    }
+
+    /**
+     * Writes the simulation state to a checkpoint: the clock and schedule, every elevator,
+     * hall calls awaiting assignment, hall and car calls still in the ingress queue, learned
+     * demand, statistics, and the traffic source's position. Stepping thread only, between frames.
+     * @param out the checkpoint
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(getTime());
+        out.writeLong(lastFrame);
+        for (int i=0;i<elevators.length;i++) {
+            elevators[i].writeState(out);
+            //Parked elevators are only in the schedule for demand parking updates
+            boolean scheduled = !waiting.get(i) || setting.demandParking;
+            out.writeLong(scheduled ? pending[i].time : -1);
+            out.writeBoolean(waiting.get(i));
+            out.writeInt(parking[i]);
+            out.writeLong(parkedSince[i]);
+        }
+        out.writeLong(arrivalsScheduled ? arrivals.time : -1);
+
+        writeRequests(out, new ArrayList<>(backlog));
+        ArrayList<Request> ingress = new ArrayList<>();
+        requestQueue.forEach(ingress::add);
+        writeRequests(out, ingress);
+        demand.writeState(out);
+        statistics.writeState(out);
+        if (setting.autoRequests) source.writeState(out);
+    }
+
+    /**
+     * Replaces the simulation state with that read from a checkpoint. The dispatcher must
+     * have been built with the checkpoint's setting and a traffic source built the same way.
+     * @param in the checkpoint
+     */
+    public void readState(DataInput in) throws IOException {
+        scheduler.reset(in.readLong());
+        lastFrame = in.readLong();
+        waiting.clear();
+        for (int i=0;i<elevators.length;i++) {
+            elevators[i].readState(in);
+            long next = in.readLong();
+            if (next >= 0) pending[i] = scheduler.schedule(elevators[i], next);
+            waiting.set(i, in.readBoolean());
+            parking[i] = in.readInt();
+            parkedSince[i] = in.readLong();
+        }
+        long next = in.readLong();
+        arrivalsScheduled = next >= 0;
+        if (arrivalsScheduled) scheduler.reschedule(arrivals, next);
+
+        backlog.clear();
+        for (int n=in.readInt();n>0;n--) {
+            backlog.add(readRequest(in));
+        }
+        //Calls not yet taken in go back in the ingress queue, to be taken in at the same point
+        for (int n=in.readInt();n>0;n--) {
+            requestQueue.offer(readRequest(in));
+        }
+        demand.readState(in);
+        statistics.readState(in);
+        if (setting.autoRequests) source.readState(in);
+    }
+
+    private static void writeRequests(DataOutput out, List<Request> requests) throws IOException {
+        out.writeInt(requests.size());
+        for (Request r: requests) {
+            out.writeInt(r.floor);
+            out.writeInt(r.numGuests);
+            out.writeLong(r.callTime);
+            out.writeInt(r.destination);
+            out.writeInt(r.elevator);
+        }
+    }
+
+    private static Request readRequest(DataInput in) throws IOException {
+        Request r = new Request(in.readInt(), -1, in.readInt(), in.readLong(), in.readInt());
+        r.elevator = in.readInt();
+        return r;
+    }
+
+    /**
+     * Saves the simulation after every frame the checkpointer asks for
+     * @param checkpointer the checkpointer, or null to stop saving
+     */
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Checks whether anything is left to simulate
+     * @return false once every elevator is parked for good and no more hall calls will come
+     */
+    public boolean hasPendingEvents() {
+        return !scheduler.isEmpty();
+    }
+
+    public Elevator getElevator(int id) {
+        return elevators[id];
+    }
+
+    /**
+     * Returns the dense copy of elevator state that dispatch decisions scan
+     * @return the fleet state, indexed by elevator id
+     */
+    public FleetState getFleet() {
+        return fleet;
+    }
+
+    /**
+     * Returns the scorer picking elevators for hall calls
+     * @return the pickup scorer, or null if the elevator index is used
+     */
+    public PickupScorer getPickupScorer() {
+        return scorer;
+    }
+
+    public int getNumElevators() {
+        return elevators.length;
+    }
+
+    public Setting getSetting() {
+        return setting;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    public boolean isVerbose() {
+        return log != null;
+    }
+
+    /**
+     * Returns the log of elevator actions
+     * @return the event log, or null if not verbose
+     */
+    public EventLog getEventLog() {
+        return log;
+    }
+
+    /**
+     * Returns the ingress queue, e.g. to read its throughput counters
+     * @return the request ring
+     */
+    public RequestRing getRequestQueue() {
+        return requestQueue;
+    }
+
+    /**
+     * Returns current simulated time of the discrete-event clock
+     * @return time in milliseconds
+     */
+    public long getTime() {
+        return scheduler.getTime();
     }
     
 }
@@ -1,5 +1,8 @@
 package VirtualGuests;
 
+import java.io.*;
+import java.util.*;
+
 /**
  * An instant-moving elevator that efficiently transports guests to different floors
  * given pick-up and drop-off requests.
@@ -10,6 +13,8 @@ package VirtualGuests;
 
 public class Elevator {
     private Dispatcher dispatcher; //Central commanding dispatcher
+    private EventLog log; //Where actions are logged, or null if not verbose
+    private FleetState fleet; //Dispatcher's dense copy of elevator state, kept in sync here
     private int id; //Unique identifier for every elevator
     private int currentFloor; //Current floor the elevator is on
     private int direction; //Direction that elevator is moving in
@@ -18,30 +23,93 @@ public class Elevator {
     private int timestamp = 0; //Internal timestamp for operations
     private int currentCapacity; //Number of guests currently holding
     private int maxCapacity; //Total number of guests elevator can hold
+    private int reserved; //Guests of pending pickups, already promised a spot
+    private long[] pickupCallTime; //Hall call time of the pending pickup on each floor
+    private ArrayList<Request> routed; //Pending pickups whose destination is already known
+    private int[] planned; //Guests of routed pickups headed to each floor, not yet onboard
+    private long[] boardTime; //Boarding time of each group onboard, oldest first (circular)
+    private int[] boardCount; //Number of guests in each onboard group (circular)
+    private int boardHead; //Index of oldest onboard group
+    private int boardSize; //Number of onboard groups
 
     //Initializes the elevator stationary and empty of requests
     public Elevator(Dispatcher dispatcher, int id) {
         this.dispatcher = dispatcher;
+        this.log = dispatcher.getEventLog();
+        this.fleet = dispatcher.getFleet();
         this.id = id;
         this.currentFloor = 1;
         this.direction = 0;
-        this.pickupReq = new RequestHandler();
-        this.dropoffReq = new RequestHandler();
+        this.pickupReq = newRequestHandler(dispatcher.getSetting());
+        this.dropoffReq = newRequestHandler(dispatcher.getSetting());
         this.timestamp = 0;
         this.currentCapacity = 0;
-        this.maxCapacity = Setting.CARRYING_CAPACITY;
+        Setting setting = dispatcher.getSetting();
+        this.maxCapacity = setting.carryingCapacity;
+        this.pickupCallTime = new long[setting.numFloors + 1];
+        this.routed = new ArrayList<>();
+        this.planned = new int[setting.numFloors + 1];
+        this.boardTime = new long[maxCapacity + 1];
+        this.boardCount = new int[maxCapacity + 1];
+        dispatcher.trackMove(this, -1, 0);
+        publish();
         
         update();
     }
 
+    /**
+     * Creates the request handler implementation chosen in settings
+     * @param setting configuration of the simulation
+     * @return an empty request handler
+     */
+    private static RequestHandler newRequestHandler(Setting setting) {
+        if (setting.primitiveRequests) {
+            return new BitsetRequestHandler(setting.numFloors);
+        }
+        return new TreeRequestHandler();
+    }
+
     /**
      * Adds a pickup request to the set
      * @param floor the floor to pick up from
      * @param numGuests the number of guests that need transit
      */
     public void addPickup(int floor, int numGuests) {
+        addPickup(floor, numGuests, dispatcher.getTime());
+    }
+
+    /**
+     * Adds a pickup request to the set for guests who have already been waiting.
+     * Guests joining a floor that already has a pickup are merged into it, and the
+     * pickup keeps the earliest call time so waits are measured from the first call.
+     * @param floor the floor to pick up from
+     * @param numGuests the number of guests that need transit
+     * @param callTime simulated time the guests called for an elevator
+     */
+    public void addPickup(int floor, int numGuests, long callTime) {
+        addPickup(floor, numGuests, callTime, -1);
+    }
+
+    /**
+     * Adds a pickup request for guests who called with their destination. Both stops are
+     * planned now, and the drop-off is requested as soon as the guests board.
+     * @param floor the floor to pick up from
+     * @param numGuests the number of guests that need transit
+     * @param callTime simulated time the guests called for an elevator
+     * @param destination the floor the guests are headed to, or -1 if unknown
+     */
+    public void addPickup(int floor, int numGuests, long callTime, int destination) {
+        if (destination >= 0) {
+            routed.add(new Request(floor, -1, numGuests, callTime, destination));
+            planned[destination] += numGuests;
+        }
+        if (!pickupReq.hasRequest(floor) || callTime < pickupCallTime[floor]) {
+            pickupCallTime[floor] = callTime;
+        }
+        reserved += numGuests;
         pickupReq.addRequest(floor, timestamp, numGuests);
         timestamp++;
+        publish();
     }
 
     /**
@@ -52,6 +120,7 @@ public class Elevator {
     public void addDropoff(int floor, int numGuests) {
         dropoffReq.addRequest(floor, timestamp, numGuests);
         timestamp++;
+        publish();
     }
     
     /**
@@ -59,24 +128,46 @@ public class Elevator {
      * @param floor pickup floor
      */
     private void completePickup(int floor) {
-        Request r = pickupReq.getRequest(floor);
-        if (r != null) {
+        if (pickupReq.hasRequest(floor)) {
+            int numGuests = pickupReq.getGuests(floor);
             pickupReq.completeRequest(floor);
+            reserved -= numGuests;
 
             //Ensure that we aren't overflowing elevator
-            int numPickup = Math.min(r.numGuests, maxCapacity - currentCapacity);
-            int leftover = r.numGuests - numPickup;
+            int numPickup = Math.min(numGuests, maxCapacity - currentCapacity);
+            int leftover = numGuests - numPickup;
 
-            if (numPickup > 0) {
-                System.out.println("Elevator " + id + " picked up " + numPickup + " guests at floor " + floor);
+            if (EventLog.LEVEL >= EventLog.ACTIONS && numPickup > 0 && log != null) {
+                log.record(EventLog.PICKUP, dispatcher.getTime(), id, floor, numPickup);
             }
 
             currentCapacity += numPickup;
+            board(numPickup);
+            dispatcher.getStatistics().recordPickup(numPickup, leftover);
+            dispatcher.getStatistics().recordWait(dispatcher.getTime() - pickupCallTime[floor], numPickup);
+
+            //Guests who called with a destination board first, requesting their floor as they do
+            int room = numPickup;
+            for (int i=routed.size()-1;i>=0;i--) {
+                Request g = routed.get(i);
+                if (g.floor != floor) continue;
+                int take = Math.min(g.numGuests, room);
+                if (take > 0) addDropoff(g.destination, take);
+                planned[g.destination] -= g.numGuests;
+                room -= take;
+                leftover -= g.numGuests - take;
+                if (take < g.numGuests) {
+                    dispatcher.returnPickup(this, floor, g.numGuests - take, pickupCallTime[floor], g.destination);
+                }
+                routed.set(i, routed.get(routed.size() - 1));
+                routed.remove(routed.size() - 1);
+            }
 
             //If there are remaining guests on that floor, dump back to Dispatcher
             if (leftover > 0) {
-                dispatcher.addPickup(floor, leftover);
+                dispatcher.returnPickup(this, floor, leftover, pickupCallTime[floor], -1);
             }
+            publish();
         }
     }
 
@@ -85,11 +176,54 @@ public class Elevator {
      * @param floor dropoff floor
      */
     private void completeDropoff(int floor) {
-        Request r = dropoffReq.getRequest(floor);
-        if (r != null) {
+        if (dropoffReq.hasRequest(floor)) {
+            //Car calls from outside may name more guests than are onboard, never fewer than none
+            int numGuests = Math.max(0, Math.min(dropoffReq.getGuests(floor), currentCapacity));
             dropoffReq.completeRequest(floor);
-            System.out.println("Elevator " + id + " dropped off " + r.numGuests + " guests at floor " + floor);
-            currentCapacity -= r.numGuests;
+            if (EventLog.LEVEL >= EventLog.ACTIONS && log != null) {
+                log.record(EventLog.DROPOFF, dispatcher.getTime(), id, floor, numGuests);
+            }
+            currentCapacity -= numGuests;
+            alight(numGuests);
+            dispatcher.getStatistics().recordDropoff(numGuests);
+            publish();
+        }
+    }
+
+    /**
+     * Remembers when a group of guests boarded, to measure their ride time later
+     * @param numGuests the number of guests boarding now
+     */
+    private void board(int numGuests) {
+        if (numGuests <= 0) return;
+        long now = dispatcher.getTime();
+        int last = (boardHead + boardSize - 1) % boardTime.length;
+        if (boardSize > 0 && boardTime[last] == now) {
+            boardCount[last] += numGuests;
+            return;
+        }
+        if (boardSize == boardTime.length) return; //Untracked guests (more than capacity onboard)
+        int slot = (boardHead + boardSize) % boardTime.length;
+        boardTime[slot] = now;
+        boardCount[slot] = numGuests;
+        boardSize++;
+    }
+
+    /**
+     * Records ride times of exiting guests, assuming the earliest to board exit first
+     * @param numGuests the number of guests exiting now
+     */
+    private void alight(int numGuests) {
+        long now = dispatcher.getTime();
+        while (numGuests > 0 && boardSize > 0) {
+            int n = Math.min(numGuests, boardCount[boardHead]);
+            dispatcher.getStatistics().recordRide(now - boardTime[boardHead], n);
+            numGuests -= n;
+            boardCount[boardHead] -= n;
+            if (boardCount[boardHead] == 0) {
+                boardHead = (boardHead + 1) % boardTime.length;
+                boardSize--;
+            }
         }
     }
 
@@ -99,18 +233,15 @@ public class Elevator {
      * @return true if any floors addressed, false otherwise
      */
     private boolean addressFloor(int floor) {
-        System.out.println("-----------------------------");
-
         if (floor == currentFloor) {
             //If going to same floor as current and no more requests, reached steady-state
             if (getNumRequests() == 0) {
                 return false;
             }
         }
-        else {
-            System.out.println("Elevator " + id + " moved to floor " + floor);
+        else if (EventLog.LEVEL >= EventLog.ACTIONS && log != null) {
+            log.record(EventLog.MOVED, dispatcher.getTime(), id, floor, currentCapacity);
         }
-        
 
         //Complete any pickups or dropoffs (note: RequestTracker handles non-existence)
         completePickup(floor);
@@ -118,16 +249,8 @@ public class Elevator {
 
         //Update elevator states
         int delta = floor - currentFloor;
-        currentFloor = floor;
-        direction = delta == 0 ? 0 : delta/Math.abs(delta); 
-
-        System.out.println("-----------------------------");
-
-        try {
-            Thread.sleep(Setting.SIMUL_TIMESTEP); //Delay between every action
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        moveTo(floor, delta == 0 ? 0 : delta/Math.abs(delta));
+        dispatcher.getStatistics().recordAction(Math.abs(delta));
 
         return true;
     }
@@ -136,9 +259,9 @@ public class Elevator {
      * Updates decision-making after state change to elevator.
      * If currently moving up or down:
      * (+) Continue to complete pickup and dropoff requests in that direction until finished
-     * (+) Reverse direction to address requests on other side (unless no requests, then return to floor N/2)
+     * (+) Reverse direction to address requests on other side (unless no requests, then park)
      * If no more requests:
-     * (+) Return to middle floor to await more commands
+     * (+) Park where the dispatcher expects the next call, to await more commands
      * @return true if the elevator's state changed, or false if idle
      */
     public boolean update() {
@@ -166,15 +289,117 @@ public class Elevator {
         else {
             //Both invalid, flip direction if more requests, otherwise return to middle floor
             if (getNumRequests() == 0) {
-                return addressFloor(Setting.NUM_FLOORS / 2); //Return to middle
+                return addressFloor(dispatcher.getParkingFloor(this)); //Park where demand is
             } else {
-                direction = -direction; //Sweep other side
+                moveTo(currentFloor, -direction); //Sweep other side
                 return true;
             }
         }
         
     }
 
+    /**
+     * Writes everything needed to resume this elevator to a checkpoint
+     * @param out the checkpoint
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(currentFloor);
+        out.writeInt(direction);
+        out.writeInt(timestamp);
+        out.writeInt(currentCapacity);
+        out.writeInt(reserved);
+        writeRequests(out, pickupReq, true);
+        writeRequests(out, dropoffReq, false);
+        out.writeInt(routed.size());
+        for (Request g: routed) {
+            out.writeInt(g.floor);
+            out.writeInt(g.numGuests);
+            out.writeLong(g.callTime);
+            out.writeInt(g.destination);
+        }
+        out.writeInt(boardSize);
+        for (int k=0;k<boardSize;k++) {
+            int slot = (boardHead + k) % boardTime.length;
+            out.writeLong(boardTime[slot]);
+            out.writeInt(boardCount[slot]);
+        }
+    }
+
+    /**
+     * Writes the requests of a handler as (floor, timestamp, guests), with call times for pickups
+     */
+    private void writeRequests(DataOutput out, RequestHandler handler, boolean pickups) throws IOException {
+        out.writeInt(handler.getSize());
+        for (int f=1;f<planned.length;f++) {
+            if (!handler.hasRequest(f)) continue;
+            out.writeInt(f);
+            out.writeInt(handler.getTimestamp(f));
+            out.writeInt(handler.getGuests(f));
+            if (pickups) out.writeLong(pickupCallTime[f]);
+        }
+    }
+
+    /**
+     * Replaces this elevator's state with that read from a checkpoint
+     * @param in the checkpoint
+     */
+    public void readState(DataInput in) throws IOException {
+        int floor = in.readInt();
+        moveTo(floor, in.readInt());
+        timestamp = in.readInt();
+        currentCapacity = in.readInt();
+        reserved = in.readInt();
+
+        Setting setting = dispatcher.getSetting();
+        pickupReq = newRequestHandler(setting);
+        for (int n=in.readInt();n>0;n--) {
+            int f = in.readInt();
+            pickupReq.addRequest(f, in.readInt(), in.readInt());
+            pickupCallTime[f] = in.readLong();
+        }
+        dropoffReq = newRequestHandler(setting);
+        for (int n=in.readInt();n>0;n--) {
+            dropoffReq.addRequest(in.readInt(), in.readInt(), in.readInt());
+        }
+
+        routed.clear();
+        Arrays.fill(planned, 0);
+        for (int n=in.readInt();n>0;n--) {
+            Request g = new Request(in.readInt(), -1, in.readInt(), in.readLong(), in.readInt());
+            routed.add(g);
+            planned[g.destination] += g.numGuests;
+        }
+
+        boardHead = 0;
+        boardSize = in.readInt();
+        for (int k=0;k<boardSize;k++) {
+            boardTime[k] = in.readLong();
+            boardCount[k] = in.readInt();
+        }
+        publish();
+    }
+
+    /**
+     * Sets floor and direction, keeping the dispatcher's elevator index in sync
+     * @param floor the new floor
+     * @param newDirection the new transit direction
+     */
+    private void moveTo(int floor, int newDirection) {
+        int oldFloor = currentFloor;
+        int oldDirection = direction;
+        currentFloor = floor;
+        direction = newDirection;
+        dispatcher.trackMove(this, oldFloor, oldDirection);
+        publish();
+    }
+
+    /**
+     * Copies this elevator's floor, direction, load and request counts into the fleet state
+     */
+    private void publish() {
+        fleet.set(id, currentFloor, direction, currentCapacity, getFreeCapacity(), getNumRequests());
+    }
+
     public int getId() {
         return id;
     }
@@ -195,6 +420,34 @@ public class Elevator {
         return currentCapacity;
     }
 
+    /**
+     * Checks whether the elevator already stops at a floor, counting drop-offs of routed
+     * guests who have not boarded yet
+     * @param floor the floor
+     * @return true if a pickup, drop-off or planned drop-off exists there
+     */
+    public boolean stopsAt(int floor) {
+        return pickupReq.hasRequest(floor) || dropoffReq.hasRequest(floor) || planned[floor] > 0;
+    }
+
+    /**
+     * Estimates floors the elevator travels before reaching a floor. If moving away from
+     * it, the elevator finishes its sweep at the end of the building before turning around.
+     * @param floor the target floor
+     * @return the estimated number of floors traveled
+     */
+    public int getTravelCost(int floor) {
+        return fleet.getTravelCost(id, floor);
+    }
+
+    /**
+     * Returns room left once every pending pickup has boarded
+     * @return guests the elevator can still be assigned
+     */
+    public int getFreeCapacity() {
+        return maxCapacity - currentCapacity - reserved;
+    }
+
     public String toString() {
         String ret = "";
         ret += "Elevator State:\n-----------------------------\n";
@@ -203,6 +456,7 @@ public class Elevator {
         ret += "Pickups: " + pickupReq + "\n";
         ret += "Dropoffs: " + dropoffReq + "\n";
         ret += "Current Guests: " + currentCapacity + "\n";
+        ret += "Reserved: " + reserved + "\n";
         ret += "-----------------------------\n";
         return ret;
     }
@@ -0,0 +1,156 @@
+package VirtualGuests;
+
+import java.util.*;
+
+/**
+ * Spatial index of elevators keyed by current floor and transit direction. Elevators
+ * report every move, so the dispatcher can find the closest suitable elevator by scanning
+ * occupied floors outward from the target instead of checking every elevator. Each
+ * elevator remembers its slot in its bucket, so a move is O(1) however many elevators
+ * share the floor, e.g. a lobby full of parked cars.
+ */
+public class ElevatorIndex {
+    private BitSet[] occupied; //Floors holding at least one elevator, per direction
+    private ArrayList<ArrayList<Elevator>> buckets; //Elevators per (direction, floor), in no particular order
+    private int[] slot; //Position of each elevator in its bucket, by id
+    private int numFloors; //Highest floor an elevator can be on
+    private FleetState fleet; //Room and request counts of the indexed elevators
+
+    /**
+     * Initializes an empty index
+     * @param numFloors the highest floor an elevator can be on
+     * @param fleet state of the elevators that will be indexed
+     */
+    public ElevatorIndex(int numFloors, FleetState fleet) {
+        this.numFloors = numFloors;
+        this.fleet = fleet;
+        slot = new int[fleet.size()];
+        occupied = new BitSet[3];
+        buckets = new ArrayList<>();
+        for (int d=0;d<3;d++) {
+            occupied[d] = new BitSet(numFloors + 1);
+            for (int f=0;f<=numFloors;f++) {
+                buckets.add(new ArrayList<>());
+            }
+        }
+    }
+
+    /**
+     * Adds an elevator at its current floor and direction
+     * @param e the elevator
+     */
+    public void add(Elevator e) {
+        int d = e.getDirection() + 1;
+        int f = e.getFloor();
+        ArrayList<Elevator> bucket = bucket(d, f);
+        slot[e.getId()] = bucket.size();
+        bucket.add(e);
+        occupied[d].set(f);
+    }
+
+    /**
+     * Moves an elevator from its previous position to its current one. The last elevator of
+     * the old bucket takes its slot there, so nothing is shifted or searched.
+     * @param e the elevator
+     * @param oldFloor floor before the move
+     * @param oldDirection direction before the move
+     */
+    public void move(Elevator e, int oldFloor, int oldDirection) {
+        if (oldFloor == e.getFloor() && oldDirection == e.getDirection()) return;
+        int d = oldDirection + 1;
+        ArrayList<Elevator> old = bucket(d, oldFloor);
+        Elevator last = old.remove(old.size() - 1);
+        if (last != e) {
+            int s = slot[e.getId()];
+            old.set(s, last);
+            slot[last.getId()] = s;
+        }
+        if (old.isEmpty()) occupied[d].clear(oldFloor);
+        add(e);
+    }
+
+    /**
+     * Finds the closest elevator with room to spare traveling toward the target floor
+     * (or idle on it). If none are, falls back to the closest elevator with room overall.
+     * Full elevators are skipped, so calls never pile onto a car that would dump them back.
+     * Ties go to the elevator with the fewest requests, then the lowest id.
+     * @param floor the target floor
+     * @return the chosen elevator, or null if every elevator is full
+     */
+    public Elevator closest(int floor) {
+        //Elevators idle right here, moving up from below, or down from above
+        Elevator best = withRoom(null, bucket(1, floor));
+        if (best != null) return best;
+        int below = floor > 0 ? occupied[2].previousSetBit(floor - 1) : -1;
+        int above = floor < numFloors ? occupied[0].nextSetBit(floor + 1) : -1;
+        while (below != -1 || above != -1) {
+            int distBelow = below == -1 ? Integer.MAX_VALUE : floor - below;
+            int distAbove = above == -1 ? Integer.MAX_VALUE : above - floor;
+            if (distBelow <= distAbove) best = withRoom(best, bucket(2, below));
+            if (distAbove <= distBelow) best = withRoom(best, bucket(0, above));
+            if (best != null) return best;
+            if (distBelow <= distAbove) below = below > 0 ? occupied[2].previousSetBit(below - 1) : -1;
+            if (distAbove <= distBelow) above = above < numFloors ? occupied[0].nextSetBit(above + 1) : -1;
+        }
+
+        //No elevator with room heading this way, so take the nearest floor in any direction
+        int nearBelow = previousAny(floor);
+        int nearAbove = nextAny(floor);
+        while (nearBelow != -1 || nearAbove != -1) {
+            int distBelow = nearBelow == -1 ? Integer.MAX_VALUE : floor - nearBelow;
+            int distAbove = nearAbove == -1 ? Integer.MAX_VALUE : nearAbove - floor;
+            for (int d=0;d<3;d++) {
+                if (distBelow <= distAbove) best = withRoom(best, bucket(d, nearBelow));
+                if (distAbove <= distBelow) best = withRoom(best, bucket(d, nearAbove));
+            }
+            if (best != null) return best;
+            if (distBelow <= distAbove) nearBelow = nearBelow > 0 ? previousAny(nearBelow - 1) : -1;
+            if (distAbove <= distBelow) nearAbove = nearAbove < numFloors ? nextAny(nearAbove + 1) : -1;
+        }
+        return null;
+    }
+
+    /**
+     * Picks the elevator with room that has the fewest requests (then lowest id) among current best and bucket
+     */
+    private Elevator withRoom(Elevator best, ArrayList<Elevator> bucket) {
+        for (int i=0;i<bucket.size();i++) {
+            Elevator e = bucket.get(i);
+            int id = e.getId();
+            if (fleet.getFreeCapacity(id) <= 0) continue;
+            int requests = fleet.getNumRequests(id);
+            if (best == null || requests < fleet.getNumRequests(best.getId())
+                    || (requests == fleet.getNumRequests(best.getId()) && id < best.getId())) {
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Highest floor at or below the given one holding an elevator in any direction, or -1
+     */
+    private int previousAny(int floor) {
+        int near = -1;
+        for (int d=0;d<3;d++) {
+            near = Math.max(near, occupied[d].previousSetBit(floor));
+        }
+        return near;
+    }
+
+    /**
+     * Lowest floor at or above the given one holding an elevator in any direction, or -1
+     */
+    private int nextAny(int floor) {
+        int near = Integer.MAX_VALUE;
+        for (int d=0;d<3;d++) {
+            int up = occupied[d].nextSetBit(floor);
+            if (up != -1) near = Math.min(near, up);
+        }
+        return near == Integer.MAX_VALUE ? -1 : near;
+    }
+
+    private ArrayList<Elevator> bucket(int d, int floor) {
+        return buckets.get(d * (numFloors + 1) + floor);
+    }
+}
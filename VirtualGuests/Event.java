@@ -0,0 +1,24 @@
+package VirtualGuests;
+
+/*
+ * Scheduled update of a specific elevator at a given simulated time.
+ * Events without an elevator are polls for hall calls, dispatched first in their frame.
+ */
+public class Event implements Comparable<Event> {
+    long time;
+    Elevator elevator;
+    public Event(long time, Elevator elevator) {
+        this.time = time;
+        this.elevator = elevator;
+    }
+    public int compareTo(Event o) {
+        if (time != o.time) return Long.compare(time, o.time);
+        return id() - o.id();
+    }
+    private int id() {
+        return elevator == null ? -1 : elevator.getId();
+    }
+    public String toString() {
+        return "Time: " + time + " | " + "Elevator: " + id();
+    }
+}
@@ -0,0 +1,232 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Log of elevator actions kept off the hot path. Elevators write fixed-size binary records
+ * into a preallocated ring (lock-free, any number of threads) and a background thread
+ * writes them out in batches, either as text lines or as raw records to a file.
+ *
+ * LEVEL is a compile-time constant: call sites are guarded with LEVEL checks, so at OFF
+ * the compiler drops logging from the hot path entirely. A full ring drops records rather
+ * than stalling the simulation; the count of dropped records is reported on close.
+ *
+ * Binary files start with an 8-byte header (magic, version) followed by 24-byte records:
+ * time (long), kind, elevator, floor, guests (ints), big-endian.
+ */
+public class EventLog implements Closeable {
+    public static final int OFF = 0; //No events compiled in
+    public static final int ACTIONS = 1; //Moves, pick-ups and drop-offs
+    public static final int STATE = 2; //Also idle elevators and the dispatcher queue
+    public static final int LEVEL = STATE; //Most detailed events compiled in
+
+    public static final int MOVED = 0;
+    public static final int PICKUP = 1;
+    public static final int DROPOFF = 2;
+    public static final int IDLE = 3;
+    public static final int QUEUED = 4;
+
+    public static final int MAGIC = 0x45564C47; //"EVLG"
+    public static final short VERSION = 1;
+    public static final int HEADER_BYTES = 8;
+    public static final int RECORD_BYTES = 24;
+
+    private static final int RECORD_LONGS = 3; //Time, kind and elevator, floor and guests
+    private static final int DEFAULT_CAPACITY = 1 << 16; //Records buffered before dropping
+    private static final long IDLE_PARK_NANOS = 10_000_000; //Writer sleep when the ring is empty
+
+    private final long[] records; //Record fields, RECORD_LONGS per slot
+    private final AtomicLongArray sequence; //Per-slot publication sequence
+    private final int mask; //Index mask for slots
+    private final AtomicLong tail = new AtomicLong(); //Next slot producers claim
+    private long head; //Next slot the writer reads (writer only)
+    private final LongAdder dropped = new LongAdder(); //Records lost to a full ring
+
+    private final OutputStream out; //Destination of the log
+    private final boolean binary; //Write raw records instead of text lines
+    private final boolean closeOut; //Whether closing the log closes the stream
+    private final ByteBuffer batch; //Encoded records awaiting a write (writer only)
+    private final StringBuilder line = new StringBuilder(); //Text being formatted (writer only)
+    private final Thread writer; //Background thread draining the ring
+    private volatile boolean running = true;
+
+    /**
+     * Starts a log writing text lines to the console
+     * @return the running log
+     */
+    public static EventLog console() {
+        return new EventLog(System.out, false, false, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts a log writing binary records to a file
+     * @param path the log file, overwritten if it exists
+     * @return the running log
+     */
+    public static EventLog file(String path) throws IOException {
+        return new EventLog(new FileOutputStream(path), true, true, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts a log and its background writer
+     * @param out destination of the log
+     * @param binary whether to write raw records instead of text lines
+     * @param closeOut whether closing the log also closes out
+     * @param capacity records buffered before dropping, rounded up to a power of two
+     */
+    public EventLog(OutputStream out, boolean binary, boolean closeOut, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.records = new long[size * RECORD_LONGS];
+        this.sequence = new AtomicLongArray(size);
+        for (int i=0;i<size;i++) {
+            sequence.set(i, i);
+        }
+        this.mask = size - 1;
+        this.out = out;
+        this.binary = binary;
+        this.closeOut = closeOut;
+        this.batch = ByteBuffer.allocate(Math.min(size, 4096) * RECORD_BYTES);
+        if (binary) {
+            batch.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+        }
+        this.writer = new Thread(this::drainLoop, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends an event. Never blocks: if the writer has fallen a full ring behind, the
+     * event is dropped and counted instead.
+     * @param kind MOVED, PICKUP, DROPOFF, IDLE or QUEUED
+     * @param time simulated time in milliseconds
+     * @param elevator id of the elevator, or -1 for dispatcher events
+     * @param floor the floor
+     * @param guests guests involved, or onboard for IDLE
+     */
+    public void record(int kind, long time, int elevator, int floor, int guests) {
+        long pos;
+        while (true) {
+            pos = tail.get();
+            long diff = sequence.get((int) (pos & mask)) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+            }
+            else if (diff < 0) {
+                dropped.increment();
+                return;
+            }
+        }
+        int idx = (int) (pos & mask);
+        int base = idx * RECORD_LONGS;
+        records[base] = time;
+        records[base + 1] = ((long) kind << 32) | (elevator & 0xFFFFFFFFL);
+        records[base + 2] = ((long) floor << 32) | (guests & 0xFFFFFFFFL);
+        sequence.lazySet(idx, pos + 1); //Publish slot to writer
+    }
+
+    /**
+     * Writes out every record published so far, then stops the writer
+     */
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.sum() > 0) {
+            System.err.println("Event log dropped " + dropped.sum() + " records");
+        }
+        if (closeOut) out.close();
+        else out.flush();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Background writer: drains published records in batches, sleeping briefly when there
+     * are none, until closed and empty
+     */
+    private void drainLoop() {
+        try {
+            while (true) {
+                if (drainBatch() > 0) continue;
+                flush();
+                if (!running && !isPublished(head)) break;
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean isPublished(long pos) {
+        return sequence.get((int) (pos & mask)) == pos + 1;
+    }
+
+    /**
+     * Encodes every published record, writing the batch out whenever it fills
+     * @return number of records encoded
+     */
+    private int drainBatch() throws IOException {
+        int n = 0;
+        while (isPublished(head)) {
+            if (batch.remaining() < RECORD_BYTES) flush();
+            int idx = (int) (head & mask);
+            int base = idx * RECORD_LONGS;
+            long time = records[base];
+            int kind = (int) (records[base + 1] >> 32);
+            int elevator = (int) records[base + 1];
+            int floor = (int) (records[base + 2] >> 32);
+            int guests = (int) records[base + 2];
+            sequence.lazySet(idx, head + mask + 1); //Free slot for the next lap
+            head++;
+            n++;
+            if (binary) {
+                batch.putLong(time).putInt(kind).putInt(elevator).putInt(floor).putInt(guests);
+            }
+            else {
+                format(time, kind, elevator, floor, guests);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Appends a record as a line of text to the batch
+     */
+    private void format(long time, int kind, int elevator, int floor, int guests) throws IOException {
+        line.setLength(0);
+        line.append('[').append(time).append("] ");
+        switch (kind) {
+            case MOVED: line.append("Elevator ").append(elevator).append(" moved to floor ").append(floor); break;
+            case PICKUP: line.append("Elevator ").append(elevator).append(" picked up ").append(guests).append(" guests at floor ").append(floor); break;
+            case DROPOFF: line.append("Elevator ").append(elevator).append(" dropped off ").append(guests).append(" guests at floor ").append(floor); break;
+            case IDLE: line.append("Elevator ").append(elevator).append(" idle at floor ").append(floor).append(" with ").append(guests).append(" guests"); break;
+            case QUEUED: line.append("Dispatcher queue | Floor: ").append(floor).append(" | Guests: ").append(guests); break;
+            default: line.append("Unknown event ").append(kind);
+        }
+        line.append('\n');
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (batch.remaining() < bytes.length) flush();
+        if (bytes.length > batch.capacity()) {
+            out.write(bytes);
+            return;
+        }
+        batch.put(bytes);
+    }
+
+    private void flush() throws IOException {
+        if (batch.position() == 0) return;
+        out.write(batch.array(), 0, batch.position());
+        out.flush();
+        batch.clear();
+    }
+}
@@ -0,0 +1,84 @@
+package VirtualGuests;
+
+import java.util.*;
+
+/**
+ * Discrete-event clock for the simulation. Elevator updates are stored as timestamped
+ * events and dispatched in time order, with simulated time jumping straight to the
+ * next event instead of waiting on the wall clock.
+ */
+public class EventScheduler {
+    private PriorityQueue<Event> events; //Pending events sorted by time, then elevator id
+    private volatile long currentTime; //Simulated time in milliseconds, readable from any thread
+
+    /**
+     * Initializes an empty scheduler at time 0
+     */
+    public EventScheduler() {
+        events = new PriorityQueue<>();
+        currentTime = 0;
+    }
+
+    /**
+     * Schedules an update for an elevator
+     * @param e the elevator to update, or null to poll for hall calls
+     * @param time simulated time of the update
+     * @return the scheduled event
+     */
+    public Event schedule(Elevator e, long time) {
+        Event ev = new Event(time, e);
+        events.add(ev);
+        return ev;
+    }
+
+    /**
+     * Re-queues an already dispatched event at a later time, reusing the object
+     * @param ev the dispatched event
+     * @param time new simulated time of the event
+     */
+    public void reschedule(Event ev, long time) {
+        ev.time = time;
+        events.add(ev);
+    }
+
+    /**
+     * Removes the earliest event and advances the clock to its timestamp
+     * @return the earliest event, or null if none are scheduled
+     */
+    public Event poll() {
+        Event ev = events.poll();
+        if (ev != null) currentTime = ev.time;
+        return ev;
+    }
+
+    /**
+     * Returns timestamp of the earliest event without dispatching it
+     * @return the timestamp, or -1 if none are scheduled
+     */
+    public long peekTime() {
+        Event ev = events.peek();
+        if (ev == null) return -1;
+        return ev.time;
+    }
+
+    /**
+     * Drops every pending event and sets the clock, e.g. when restoring a checkpoint
+     * @param time simulated time to resume from
+     */
+    public void reset(long time) {
+        events.clear();
+        currentTime = time;
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    public long getTime() {
+        return currentTime;
+    }
+
+    public int getSize() {
+        return events.size();
+    }
+}
@@ -0,0 +1,162 @@
+package VirtualGuests;
+
+/**
+ * Dense copy of the state dispatch decisions read from every elevator, one primitive
+ * column per field, indexed by elevator id. Each elevator writes its own row whenever it
+ * moves or its requests change, so scoring a hall call against the whole fleet walks a
+ * few contiguous arrays instead of chasing elevator objects and their request sets.
+ * Rows are only written by their own elevator, so parallel stepping needs no locking.
+ *
+ * Every column is an int[], direction included: the JIT only turns the fleet loops into
+ * SIMD code when all the lanes involved have the same width.
+ */
+public class FleetState {
+    private int numFloors; //Highest floor, where upward sweeps turn around
+    private int[] floor; //Current floor per elevator
+    private int[] direction; //Transit direction per elevator (-1, 0 or 1)
+    private int[] load; //Guests onboard per elevator
+    private int[] free; //Room left per elevator once its pending pickups board
+    private int[] stops; //Pending pickups plus drop-offs per elevator
+
+    /**
+     * @param numElevators size of the fleet
+     * @param numFloors highest floor of the building
+     */
+    public FleetState(int numElevators, int numFloors) {
+        this.numFloors = numFloors;
+        floor = new int[numElevators];
+        direction = new int[numElevators];
+        load = new int[numElevators];
+        free = new int[numElevators];
+        stops = new int[numElevators];
+    }
+
+    /**
+     * Overwrites an elevator's row
+     * @param id the elevator
+     * @param currentFloor its floor
+     * @param currentDirection its transit direction
+     * @param onboard guests onboard
+     * @param freeCapacity room left once pending pickups board
+     * @param numRequests pending pickups plus drop-offs
+     */
+    public void set(int id, int currentFloor, int currentDirection, int onboard, int freeCapacity, int numRequests) {
+        floor[id] = currentFloor;
+        direction[id] = currentDirection;
+        load[id] = onboard;
+        free[id] = freeCapacity;
+        stops[id] = numRequests;
+    }
+
+    /**
+     * Estimates floors an elevator travels before reaching a floor. If moving away from
+     * it, the elevator finishes its sweep at the end of the building before turning around.
+     * @param id the elevator
+     * @param target the target floor
+     * @return the estimated number of floors traveled
+     */
+    public int getTravelCost(int id, int target) {
+        return travelCost(floor[id], direction[id], target);
+    }
+
+    /**
+     * Travel cost of every elevator to a floor
+     * @param target the target floor
+     * @param out travel cost per elevator id, at least size() long
+     */
+    public void travelCosts(int target, int[] out) {
+        for (int i=0;i<floor.length;i++) {
+            out[i] = travelCost(floor[i], direction[i], target);
+        }
+    }
+
+    /**
+     * Travel cost of some elevators to a floor
+     * @param target the target floor
+     * @param ids the elevators
+     * @param m number of entries of ids in use
+     * @param out receives the cost of ids[c] at offset + c
+     * @param offset first index of out written
+     */
+    public void travelCosts(int target, int[] ids, int m, int[] out, int offset) {
+        for (int c=0;c<m;c++) {
+            int i = ids[c];
+            out[offset + c] = travelCost(floor[i], direction[i], target);
+        }
+    }
+
+    /**
+     * Travel cost as the distance to a pivot: the target itself when it lies ahead (or the
+     * elevator is stationary), otherwise the turnaround floor counted twice. The pivot is
+     * picked with a sign mask instead of a branch, so the fleet loops above vectorize.
+     */
+    private int travelCost(int from, int dir, int target) {
+        int away = (dir * (target - from)) >> 31; //All ones if moving away from the target
+        int turn2 = (dir + 1) * (numFloors - 1) + 2; //Twice the top floor going up, twice 1 going down
+        int pivot = 2 * target + ((turn2 - 2 * target) & away);
+        return Math.abs(pivot - from - target);
+    }
+
+    /**
+     * Collects the elevators with room for more guests
+     * @param ids receives the ids of those elevators, in id order
+     * @return number of ids written
+     */
+    public int collectAvailable(int[] ids) {
+        int open = 0;
+        for (int i=0;i<free.length;i++) {
+            ids[open] = i;
+            open += free[i] > 0 ? 1 : 0;
+        }
+        return open;
+    }
+
+    /*
+     * Live columns for scoring kernels outside this package, indexed by elevator id.
+     * Read them between frames only, and never write to them.
+     */
+
+    public int[] getFloors() {
+        return floor;
+    }
+
+    public int[] getDirections() {
+        return direction;
+    }
+
+    public int[] getFreeCapacities() {
+        return free;
+    }
+
+    public int[] getRequestCounts() {
+        return stops;
+    }
+
+    public int getNumFloors() {
+        return numFloors;
+    }
+
+    public int getFloor(int id) {
+        return floor[id];
+    }
+
+    public int getDirection(int id) {
+        return direction[id];
+    }
+
+    public int getLoad(int id) {
+        return load[id];
+    }
+
+    public int getFreeCapacity(int id) {
+        return free[id];
+    }
+
+    public int getNumRequests(int id) {
+        return stops[id];
+    }
+
+    public int size() {
+        return floor.length;
+    }
+}
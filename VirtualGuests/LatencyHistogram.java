@@ -0,0 +1,141 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Fixed-memory histogram of non-negative durations. Values are grouped into log-linear
+ * buckets (16 per power of two, so within about 6% of the true value) and recording is a
+ * single atomic add, cheap enough for the simulation hot path and safe across threads.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4; //log2 of buckets per power of two
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS); //Samples per bucket
+    private final AtomicLong total = new AtomicLong(); //Number of samples
+    private final AtomicLong sum = new AtomicLong(); //Sum of samples, for the mean
+    private final AtomicLong max = new AtomicLong(); //Largest sample
+
+    /**
+     * Records the same duration several times
+     * @param value the duration (negative values count as 0)
+     * @param count number of samples with this duration
+     */
+    public void record(long value, long count) {
+        if (count <= 0) return;
+        value = Math.max(0, value);
+        counts.addAndGet(bucketOf(value), count);
+        total.addAndGet(count);
+        sum.addAndGet(value * count);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Returns an upper estimate of a percentile
+     * @param p the percentile as a fraction, e.g. 0.95
+     * @return the duration at or below which a fraction p of samples fall, or 0 if empty
+     */
+    public long getPercentile(double p) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i=0;i<NUM_BUCKETS;i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Adds another histogram's samples into this one
+     * @param other the histogram to merge in
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i=0;i<NUM_BUCKETS;i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        total.addAndGet(other.total.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Writes the samples to a checkpoint, only buckets that have any
+     * @param out the checkpoint
+     */
+    public void writeState(DataOutput out) throws IOException {
+        int used = 0;
+        for (int i=0;i<NUM_BUCKETS;i++) {
+            if (counts.get(i) != 0) used++;
+        }
+        out.writeInt(used);
+        for (int i=0;i<NUM_BUCKETS;i++) {
+            long c = counts.get(i);
+            if (c == 0) continue;
+            out.writeShort(i);
+            out.writeLong(c);
+        }
+        out.writeLong(total.get());
+        out.writeLong(sum.get());
+        out.writeLong(max.get());
+    }
+
+    /**
+     * Replaces the samples with those read from a checkpoint
+     * @param in the checkpoint
+     */
+    public void readState(DataInput in) throws IOException {
+        for (int i=0;i<NUM_BUCKETS;i++) {
+            counts.set(i, 0);
+        }
+        int used = in.readInt();
+        for (int k=0;k<used;k++) {
+            int i = in.readShort();
+            counts.set(i, in.readLong());
+        }
+        total.set(in.readLong());
+        sum.set(in.readLong());
+        max.set(in.readLong());
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Maps a value to its bucket: exact below 2 * SUB_COUNT, then SUB_COUNT buckets per power of two
+     */
+    private static int bucketOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value that maps to a bucket
+     */
+    private static long highestValueIn(int bucket) {
+        int shift = Math.max(0, bucket / SUB_COUNT - 1);
+        long lowest = (long) (bucket - shift * SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    public String toString() {
+        return "p50 " + getPercentile(0.50) + " | p95 " + getPercentile(0.95)
+                + " | p99 " + getPercentile(0.99) + " | max " + getMax() + " (n=" + getCount() + ")";
+    }
+}
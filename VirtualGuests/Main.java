@@ -1,14 +1,167 @@
 package VirtualGuests;
 
+import java.io.*;
+import java.util.*;
+
 /**
  * Handles listening to user inputs and sending actions to elevator
+ *
+ * Usage: Main [--seed N] [--record trace.bin] [--log events.bin] [--dispatch greedy|scan|batch|destination]
+ *             [--replay trace.bin | --arrivals arrivals.csv | --profile NAME [--rate guests/hour]] [--discrete]
+ * where NAME is office, uppeak, downpeak, lunch, interfloor or none. With destination dispatch,
+ * profile guests enter their destination when calling. Scan dispatch makes greedy's choice by
+ * scoring every elevator, in SIMD when run with --add-modules jdk.incubator.vector.
+ * Elevator actions are logged to the console, or as binary event records to the --log file.
+ * --checkpoint snap.bin [--checkpoint-minutes N] saves the run every N simulated minutes
+ * (default 10), and --restore snap.bin resumes one; give it the same traffic options.
+ * --listen PORT takes hall and car calls from local clients (see ControlServer) as it runs;
+ * with --profile none they are the only guests.
+ * --discrete runs in simulated time as fast as events allow, e.g. days of traffic in seconds,
+ * instead of ticking on the wall clock, until no events are left or the program is stopped.
  */
 class Main {
-    public static void main(String args[]) {
-        Dispatcher dispatcher = new Dispatcher();
+    private static final int LISTEN_QUEUE_CAPACITY = 1 << 18; //Calls buffered per tick when listening
+
+    private static final long STOP_TIMEOUT_MILLIS = 60_000; //Longest wait for the stepping loop to stop
+
+    private static volatile boolean stopping; //Set by the shutdown hook to end the discrete-event loop
+
+    public static void main(String args[]) throws IOException {
+        Long seed = null;
+        String recordPath = null;
+        String replayPath = null;
+        String arrivalsPath = null;
+        String profile = null;
+        double rate = 600;
+        String dispatch = "greedy";
+        String logPath = null;
+        String checkpointPath = null;
+        String restorePath = null;
+        double checkpointMinutes = 10;
+        Integer listenPort = null;
+        boolean discrete = false;
+        for (int i=0;i<args.length;i++) {
+            if (args[i].equals("--discrete")) discrete = true;
+            else if (i + 1 == args.length) break;
+            else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("--record")) recordPath = args[++i];
+            else if (args[i].equals("--replay")) replayPath = args[++i];
+            else if (args[i].equals("--arrivals")) arrivalsPath = args[++i];
+            else if (args[i].equals("--profile")) profile = args[++i];
+            else if (args[i].equals("--rate")) rate = Double.parseDouble(args[++i]);
+            else if (args[i].equals("--dispatch")) dispatch = args[++i];
+            else if (args[i].equals("--log")) logPath = args[++i];
+            else if (args[i].equals("--checkpoint")) checkpointPath = args[++i];
+            else if (args[i].equals("--checkpoint-minutes")) checkpointMinutes = Double.parseDouble(args[++i]);
+            else if (args[i].equals("--restore")) restorePath = args[++i];
+            else if (args[i].equals("--listen")) listenPort = Integer.parseInt(args[++i]);
+        }
+        if (recordPath != null && (checkpointPath != null || restorePath != null)) {
+            throw new IllegalArgumentException("A recorded trace can't be checkpointed");
+        }
+
+        Setting setting = new Setting();
+        switch (dispatch) {
+            case "greedy": break;
+            case "scan": setting.fleetScoring = true; break;
+            case "batch": setting.batchAssignment = true; break;
+            case "destination": setting.destinationDispatch = true; break;
+            default: throw new IllegalArgumentException("Unknown dispatch mode: " + dispatch);
+        }
+        if (listenPort != null) listening(setting);
+        TrafficSource source = seed != null ? new Simulator(setting, seed) : new Simulator(setting);
+        if (replayPath != null) {
+            source = new TraceReplay(replayPath);
+        }
+        else if (arrivalsPath != null) {
+            source = new ArrivalFileSource(arrivalsPath, setting.numFloors, source);
+        }
+        else if (profile != null) {
+            source = trafficProfile(setting, profile, rate, seed != null ? seed : new Random().nextLong());
+        }
+        TraceRecorder recorder = recordPath != null ? new TraceRecorder(source, recordPath) : null;
+        if (recorder != null) source = recorder;
+
+        EventLog log = logPath != null ? EventLog.file(logPath) : EventLog.console();
+        Dispatcher dispatcher = restorePath == null ? new Dispatcher(setting, source, log)
+                : listenPort != null ? Checkpointer.restore(restorePath, source, log, Main::listening)
+                : Checkpointer.restore(restorePath, source, log);
+        setting = dispatcher.getSetting();
+        if (discrete) setting.realTime = false;
+        Checkpointer checkpointer = checkpointPath != null
+                ? new Checkpointer(checkpointPath, (long) (checkpointMinutes * 60_000)) : null;
+        dispatcher.setCheckpointer(checkpointer);
+        ControlServer server = listenPort != null ? new ControlServer(dispatcher, listenPort) : null;
+        if (server != null) {
+            server.start();
+            System.out.println("Taking calls on localhost:" + server.getPort());
+        }
+        RealTimeDriver driver = setting.realTime ? new RealTimeDriver(dispatcher) : null;
+        Thread stepper = Thread.currentThread();
+        //Summarize the run when the program is stopped, once nothing is stepping the
+        //dispatcher, so no output is closed while a step is still writing to it
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (driver != null) {
+                    driver.stop();
+                }
+                else {
+                    //Bounded like RealTimeDriver.stop, since the loop may be waiting on a prompt
+                    stopping = true;
+                    stepper.join(STOP_TIMEOUT_MILLIS);
+                    if (stepper.isAlive()) stepper.interrupt();
+                }
+                if (server != null) server.close();
+                if (checkpointer != null) checkpointer.close();
+                log.close();
+                System.out.println(dispatcher.getStatistics());
+                if (recorder != null) recorder.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        if (driver != null) {
+            //Timer thread keeps the program alive and steps once per timestep
+            driver.start();
+            return;
+        }
         boolean isRunning = true;
-        while (isRunning) {
+        while (isRunning && !stopping) {
             dispatcher.step();
+            isRunning = dispatcher.hasPendingEvents();
+        }
+    }
+
+    /**
+     * Sizes the ingress queue for calls from a ControlServer. Calls are taken in once per
+     * tick, so the queue has to hold a tick's worth, and a full queue answers BUSY rather
+     * than stalling the server thread, and with it every client, until the next tick.
+     * @param setting configuration of the simulation
+     */
+    private static void listening(Setting setting) {
+        setting.requestQueueCapacity = Math.max(setting.requestQueueCapacity, LISTEN_QUEUE_CAPACITY);
+        setting.queueBackpressure = RequestRing.Backpressure.REJECT;
+    }
+
+    /**
+     * Builds Poisson traffic for a named profile
+     * @param setting configuration of the simulation
+     * @param name office, uppeak, downpeak, lunch, interfloor, or none for no generated guests
+     * @param rate guests per hour (peak hour for office)
+     * @param seed the random seed
+     */
+    private static TrafficSource trafficProfile(Setting setting, String name, double rate, long seed) {
+        if (name.equals("none")) return new NoTraffic();
+        int n = setting.numFloors;
+        switch (name) {
+            case "office": return PoissonTraffic.officeDay(n, rate, 6, seed);
+            case "uppeak": return PoissonTraffic.constant(TrafficProfile.upPeak(n), rate, seed);
+            case "downpeak": return PoissonTraffic.constant(TrafficProfile.downPeak(n), rate, seed);
+            case "lunch": return PoissonTraffic.constant(TrafficProfile.lunch(n), rate, seed);
+            case "interfloor": return PoissonTraffic.constant(TrafficProfile.interfloor(n), rate, seed);
+            default: throw new IllegalArgumentException("Unknown traffic profile: " + name);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Traffic source that generates nothing, for buildings whose guests all come from outside
+ * the simulation, e.g. through a ControlServer. Guests then need a destination on their
+ * hall call or a car call to get off, since none is made up for them.
+ */
+public class NoTraffic implements TrafficSource {
+    public Vector<Request> generatePickups(long time) {
+        return new Vector<>();
+    }
+
+    public Vector<Request> generateDropoffs(Elevator e, long time) {
+        return new Vector<>();
+    }
+
+    public long nextArrivalTime(long time) {
+        return Long.MAX_VALUE;
+    }
+
+    public void writeState(DataOutput out) {
+    }
+
+    public void readState(DataInput in) {
+    }
+}
@@ -0,0 +1,175 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Evaluates a grid (or a random sample of it) of building configurations over several seeds.
+ * Every run is an independent discrete-event simulation, so runs are spread over all cores,
+ * and one row of wait, ride and throughput results is written per configuration and seed.
+ *
+ * Usage: ParameterSweep [floors=30,60] [capacity=10,20] [guests=40] [elevators=0,4]
+ *                       [seeds=3] [hours=8] [samples=N] [out=sweep.csv]
+ * Lists are comma separated, elevators=0 derives the fleet size from the floor count,
+ * and samples=N picks N random configurations from the grid instead of running all of it.
+ */
+public class ParameterSweep {
+    public static final String HEADER = "floors,capacity,maxGuests,elevators,seed,"
+            + "waitP50,waitP95,waitP99,rideP50,rideP95,passengersPerHour,dumped";
+
+    private List<Setting> configurations; //Settings to evaluate
+    private int numSeeds; //Seeds run per configuration
+    private long duration; //Simulated milliseconds per run
+
+    /**
+     * @param configurations settings to evaluate
+     * @param numSeeds seeds 0..numSeeds-1 are run for every configuration
+     * @param duration simulated milliseconds to run each building for
+     */
+    public ParameterSweep(List<Setting> configurations, int numSeeds, long duration) {
+        this.configurations = configurations;
+        this.numSeeds = numSeeds;
+        this.duration = duration;
+    }
+
+    /**
+     * Builds every combination of the given knobs on top of the default setting
+     * @return the full grid, floors varying slowest
+     */
+    public static List<Setting> grid(int[] floors, int[] capacities, int[] guests, int[] elevators) {
+        List<Setting> grid = new ArrayList<>();
+        for (int f: floors) {
+            for (int c: capacities) {
+                for (int g: guests) {
+                    for (int e: elevators) {
+                        Setting s = new Setting();
+                        s.numFloors = f;
+                        s.carryingCapacity = c;
+                        s.maxGeneratedGuests = g;
+                        s.numElevators = e;
+                        grid.add(s);
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Picks a reproducible random subset of a grid, keeping grid order
+     * @param grid the configurations to sample from
+     * @param samples number of configurations to keep
+     * @param seed the random seed
+     */
+    public static List<Setting> sample(List<Setting> grid, int samples, long seed) {
+        if (samples >= grid.size()) return grid;
+        List<Integer> order = new ArrayList<>();
+        for (int i=0;i<grid.size();i++) order.add(i);
+        Collections.shuffle(order, new Random(seed));
+        List<Integer> picked = new ArrayList<>(order.subList(0, samples));
+        Collections.sort(picked);
+
+        List<Setting> sampled = new ArrayList<>();
+        for (int i: picked) sampled.add(grid.get(i));
+        return sampled;
+    }
+
+    /**
+     * Runs every configuration and seed on a pool sized to the number of cores,
+     * writing rows in configuration-then-seed order
+     * @param out destination of the CSV table, header included
+     */
+    public void run(PrintStream out) throws InterruptedException, ExecutionException {
+        int runs = configurations.size() * numSeeds;
+        int threads = Math.min(runs, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<String>> rows = new ArrayList<>();
+            for (Setting setting: configurations) {
+                for (int seed=0;seed<numSeeds;seed++) {
+                    long runSeed = seed;
+                    rows.add(pool.submit(() -> runOne(setting, runSeed)));
+                }
+            }
+
+            out.println(HEADER);
+            for (Future<String> row: rows) {
+                out.println(row.get());
+            }
+            out.flush();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Simulates a single building in discrete-event time
+     * @return the run's row of the result table
+     */
+    private String runOne(Setting setting, long seed) {
+        Dispatcher dispatcher = new Dispatcher(setting.copy(), seed, false);
+        dispatcher.runUntil(duration);
+        Statistics stats = dispatcher.getStatistics();
+        LatencyHistogram wait = stats.getWaitTime();
+        LatencyHistogram ride = stats.getRideTime();
+        return setting.numFloors + "," + setting.carryingCapacity + "," + setting.maxGeneratedGuests + ","
+                + setting.getNumElevators() + "," + seed + ","
+                + wait.getPercentile(0.50) + "," + wait.getPercentile(0.95) + "," + wait.getPercentile(0.99) + ","
+                + ride.getPercentile(0.50) + "," + ride.getPercentile(0.95) + ","
+                + String.format("%.1f", stats.getPassengersPerHour()) + "," + stats.getGuestsDumped();
+    }
+
+    private static int[] parseList(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i=0;i<parts.length;i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    public static void main(String args[]) throws Exception {
+        Setting defaults = new Setting();
+        int[] floors = {defaults.numFloors};
+        int[] capacities = {defaults.carryingCapacity};
+        int[] guests = {defaults.maxGeneratedGuests};
+        int[] elevators = {defaults.numElevators};
+        int seeds = 3;
+        double hours = 8;
+        int samples = 0;
+        String outPath = null;
+        for (String a: args) {
+            int eq = a.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Expected key=value, got: " + a);
+            String key = a.substring(0, eq), value = a.substring(eq + 1);
+            switch (key) {
+                case "floors": floors = parseList(value); break;
+                case "capacity": capacities = parseList(value); break;
+                case "guests": guests = parseList(value); break;
+                case "elevators": elevators = parseList(value); break;
+                case "seeds": seeds = Integer.parseInt(value); break;
+                case "hours": hours = Double.parseDouble(value); break;
+                case "samples": samples = Integer.parseInt(value); break;
+                case "out": outPath = value; break;
+                default: throw new IllegalArgumentException("Unknown parameter: " + key);
+            }
+        }
+
+        List<Setting> configurations = grid(floors, capacities, guests, elevators);
+        if (samples > 0) configurations = sample(configurations, samples, 0);
+        ParameterSweep sweep = new ParameterSweep(configurations, seeds, (long) (hours * 3_600_000));
+
+        long start = System.nanoTime();
+        if (outPath == null) {
+            sweep.run(System.out);
+        }
+        else {
+            try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(outPath)))) {
+                sweep.run(out);
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        System.err.println("Ran " + configurations.size() * seeds + " simulations in " + elapsed + " ms");
+    }
+}
@@ -0,0 +1,57 @@
+package VirtualGuests;
+
+/**
+ * Picks the elevator for a hall call by scoring every elevator in the fleet state, the
+ * same choice ElevatorIndex.closest makes but found by one pass over dense columns.
+ * Each elevator's score packs the whole preference order into one int, so the choice is
+ * just the lowest score, ties going to the lowest id:
+ *
+ *   (tier * numFloors + distance) * (2 * numFloors + 1) + requests
+ *
+ * where tier is 0 for an elevator heading toward the floor (or idle on it) and 1 otherwise,
+ * and requests (at most one pickup and one drop-off per floor) breaks distance ties.
+ * Full elevators score Integer.MAX_VALUE. Scores fit an int up to MAX_FLOORS floors.
+ */
+public interface PickupScorer {
+    int MAX_FLOORS = 23_000; //Tallest building whose scores fit an int
+    String VECTOR_SCORER = "VirtualGuests.SIMD.VectorPickupScorer"; //Needs jdk.incubator.vector
+
+    /**
+     * Chooses the elevator to send to a hall call
+     * @param fleet state of every elevator
+     * @param floor the calling floor
+     * @return id of the chosen elevator, or -1 if every elevator is full
+     */
+    int choose(FleetState fleet, int floor);
+
+    /**
+     * Scores one elevator for a hall call, as described above
+     * @param target the calling floor
+     * @param numFloors highest floor of the building
+     * @param floor the elevator's floor
+     * @param direction the elevator's transit direction
+     * @param free the elevator's free capacity
+     * @param requests the elevator's pending requests
+     * @return the score, lower is better
+     */
+    static int score(int target, int numFloors, int floor, int direction, int free, int requests) {
+        int d = target - floor;
+        boolean toward = direction * d > 0 || (direction | d) == 0;
+        int primary = (toward ? 0 : numFloors) + Math.abs(d);
+        int score = primary * (2 * numFloors + 1) + requests;
+        return free > 0 ? score : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Loads the SIMD scorer if it was compiled and the JVM runs with the incubating vector
+     * module (--add-modules jdk.incubator.vector), or the scalar scorer otherwise
+     * @return the fastest scorer available
+     */
+    static PickupScorer load() {
+        try {
+            return (PickupScorer) Class.forName(VECTOR_SCORER).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarPickupScorer();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generates guest arrivals as a Poisson process whose rate and trip mix change by hour of
+ * day, e.g. lobby-heavy up-peak in the morning and down-peak in the evening. Arrivals are
+ * produced lazily, one lookahead at a time, and guests calling from the same floor for the
+ * same destination between polls are merged into one request, so millions of arrivals cost
+ * little memory. Every guest draws a destination from its origin's row of the trip mix on
+ * arrival and keeps it until boarding: with destination dispatch the dispatcher sees it at
+ * the hall, otherwise it only becomes a car call once the guests board.
+ */
+public class PoissonTraffic implements TrafficSource {
+    private static final long HOUR = 3_600_000; //Milliseconds per hour
+    private static final long DAY = 24 * HOUR;
+
+    private double[] hourlyRate; //Guests arriving per hour, for each hour of day
+    private TrafficProfile[] hourlyProfile; //Trip mix for each hour of day
+    private long startOffset; //Time of day at simulated time 0
+    private RestorableRandom random; //Source of randomness, seeded for reproducible runs
+
+    private double clock; //Simulated time of the lookahead arrival (ms)
+    private int nextOrigin; //Origin floor of the lookahead arrival
+
+    private int[] dropoffCounts; //Scratch space for generating drop-offs
+    private TreeMap<Long, Request> trips; //Arrivals per origin and destination since the last poll
+
+    /**
+     * @param hourlyRate guests arriving per hour, for each of the 24 hours of the day
+     * @param hourlyProfile trip mix for each of the 24 hours of the day
+     * @param startHour hour of day at simulated time 0
+     * @param seed the random seed
+     */
+    public PoissonTraffic(double[] hourlyRate, TrafficProfile[] hourlyProfile, int startHour, long seed) {
+        if (hourlyRate.length != 24 || hourlyProfile.length != 24) {
+            throw new IllegalArgumentException("Expected a rate and profile for each of 24 hours");
+        }
+        this.hourlyRate = hourlyRate;
+        this.hourlyProfile = hourlyProfile;
+        this.startOffset = startHour * HOUR;
+        this.random = new RestorableRandom(seed);
+        int numFloors = hourlyProfile[0].getNumFloors();
+        this.dropoffCounts = new int[numFloors + 1];
+        this.trips = new TreeMap<>();
+        this.clock = 0;
+        boolean anyArrivals = false;
+        for (double rate: hourlyRate) anyArrivals |= rate > 0;
+        if (anyArrivals) advance();
+        else clock = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Constant-rate traffic with a single trip mix all day
+     * @param profile the trip mix
+     * @param guestsPerHour arrival rate
+     * @param seed the random seed
+     */
+    public static PoissonTraffic constant(TrafficProfile profile, double guestsPerHour, long seed) {
+        double[] rates = new double[24];
+        TrafficProfile[] profiles = new TrafficProfile[24];
+        Arrays.fill(rates, guestsPerHour);
+        Arrays.fill(profiles, profile);
+        return new PoissonTraffic(rates, profiles, 0, seed);
+    }
+
+    /**
+     * A typical office day: up-peak 7-10, lunch 12-14, down-peak 16-19 and light
+     * interfloor traffic otherwise, scaled by the peak arrival rate
+     * @param numFloors highest floor
+     * @param peakPerHour arrival rate in the busiest hour
+     * @param startHour hour of day at simulated time 0
+     * @param seed the random seed
+     */
+    public static PoissonTraffic officeDay(int numFloors, double peakPerHour, int startHour, long seed) {
+        TrafficProfile up = TrafficProfile.upPeak(numFloors);
+        TrafficProfile down = TrafficProfile.downPeak(numFloors);
+        TrafficProfile lunch = TrafficProfile.lunch(numFloors);
+        TrafficProfile inter = TrafficProfile.interfloor(numFloors);
+        double[] load = {0.01, 0.01, 0.01, 0.01, 0.01, 0.02, 0.05, 0.40, 1.00, 0.60, 0.20, 0.25,
+                         0.55, 0.45, 0.20, 0.20, 0.35, 0.90, 0.50, 0.15, 0.05, 0.03, 0.02, 0.01};
+        TrafficProfile[] mix = {inter, inter, inter, inter, inter, inter, up, up, up, up, inter, inter,
+                                lunch, lunch, inter, inter, down, down, down, inter, inter, inter, inter, inter};
+        double[] rates = new double[24];
+        for (int h=0;h<24;h++) rates[h] = load[h] * peakPerHour;
+        return new PoissonTraffic(rates, mix, startHour, seed);
+    }
+
+    /**
+     * Draws a destination for every arrival and merges arrivals sharing origin and destination,
+     * keeping the first arrival's time for fair wait times
+     */
+    public Vector<Request> generatePickups(long time) {
+        Vector<Request> pickups = new Vector<>();
+        while (clock <= time) {
+            int destination = hourlyProfile[hourOf((long) clock)].sampleDestination(nextOrigin, random);
+            long key = ((long) nextOrigin << 32) | destination;
+            Request trip = trips.get(key);
+            if (trip == null) trips.put(key, new Request(nextOrigin, -1, 1, (long) clock, destination));
+            else trip.numGuests++;
+            advance();
+        }
+        pickups.addAll(trips.values());
+        trips.clear();
+        return pickups;
+    }
+
+    /**
+     * Guests generated here request their floor as they board, so anyone still onboard when
+     * the elevator goes idle came from elsewhere without a destination (e.g. a ControlServer
+     * hall call). They are sent on as trips from the elevator's floor in the current hour's mix.
+     */
+    public Vector<Request> generateDropoffs(Elevator e, long time) {
+        Vector<Request> dropoffs = new Vector<>();
+        TrafficProfile profile = hourlyProfile[hourOf(time)];
+        for (int i=0;i<e.getCapacity();i++) {
+            dropoffCounts[profile.sampleDestination(e.getFloor(), random)]++;
+        }
+        for (int f=1;f<dropoffCounts.length;f++) {
+            if (dropoffCounts[f] > 0) {
+                dropoffs.add(new Request(f, -1, dropoffCounts[f]));
+                dropoffCounts[f] = 0;
+            }
+        }
+        return dropoffs;
+    }
+
+    public long nextArrivalTime(long time) {
+        return (long) Math.ceil(clock);
+    }
+
+    /**
+     * Saves the lookahead arrival and random state; arrivals are always handed out in full,
+     * so nothing else is pending between polls
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(random.getState());
+        out.writeDouble(clock);
+        out.writeInt(nextOrigin);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        random.setState(in.readLong());
+        clock = in.readDouble();
+        nextOrigin = in.readInt();
+    }
+
+    /**
+     * Draws the next arrival. Rates are constant within an hour, so an exponential gap that
+     * crosses into the next hour is redrawn from the boundary (exact by memorylessness).
+     */
+    private void advance() {
+        while (true) {
+            int hour = hourOf((long) clock);
+            double hourEnd = (Math.floor((clock + startOffset) / HOUR) + 1) * HOUR - startOffset;
+            double rate = hourlyRate[hour];
+            if (rate > 0) {
+                double gap = -Math.log(1 - random.nextDouble()) / rate * HOUR;
+                if (clock + gap < hourEnd) {
+                    clock += gap;
+                    nextOrigin = hourlyProfile[hour].sampleOrigin(random);
+                    return;
+                }
+            }
+            clock = hourEnd;
+        }
+    }
+
+    private int hourOf(long time) {
+        return (int) (((time + startOffset) % DAY) / HOUR);
+    }
+}
@@ -0,0 +1,60 @@
+package VirtualGuests;
+
+import java.util.concurrent.*;
+
+/**
+ * Paces the dispatcher against the wall clock. Every elevator advances on a shared
+ * fixed-rate tick, so the tick rate no longer depends on how many elevators there are.
+ */
+public class RealTimeDriver {
+    private Dispatcher dispatcher; //Dispatcher being driven
+    private ScheduledExecutorService executor; //Timer thread issuing ticks
+    private long ticks; //Ticks issued so far (timer thread only)
+
+    /**
+     * Initializes a stopped driver for a dispatcher
+     * @param dispatcher the dispatcher to step
+     */
+    public RealTimeDriver(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Starts ticking every simulTimestep milliseconds from the dispatcher's current time,
+     * e.g. a restored checkpoint's. Ticks are scheduled against the start time rather than
+     * the end of the previous tick, so they don't drift.
+     */
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        long period = dispatcher.getSetting().simulTimestep;
+        ticks = dispatcher.getTime() / period;
+        executor.scheduleAtFixedRate(this::tick, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops issuing ticks and waits for any tick in progress to finish, so the dispatcher
+     * is no longer being stepped (or writing to its outputs) once this returns
+     */
+    public void stop() {
+        if (executor == null) return;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the dispatcher up to the simulated time of this tick, which does nothing when
+     * no elevator is active. Exceptions are caught here because an escaping exception
+     * would silently cancel all future ticks.
+     */
+    private void tick() {
+        try {
+            dispatcher.runUntil(++ticks * dispatcher.getSetting().simulTimestep);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
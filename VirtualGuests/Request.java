@@ -6,15 +6,29 @@ public class Request implements Comparable<Request>{
     int floor;
     int timestamp;
     int numGuests;
+    long callTime; //Simulated time the guests first called for an elevator, -1 if unknown
+    int destination; //Floor the guests are headed to, -1 if only known once onboard
+    int elevator = -1; //Elevator a car call was made in, -1 for hall calls
     public Request(int floor, int timestamp, int numGuests) {
+        this(floor, timestamp, numGuests, -1);
+    }
+    public Request(int floor, int timestamp, int numGuests, long callTime) {
+        this(floor, timestamp, numGuests, callTime, -1);
+    }
+    public Request(int floor, int timestamp, int numGuests, long callTime, int destination) {
         this.floor = floor;
         this.timestamp = timestamp;
         this.numGuests = numGuests;
+        this.callTime = callTime;
+        this.destination = destination;
     }
     public int compareTo(Request o) {
         return floor - o.floor;
     }
     public String toString() {
+        if (destination >= 0) {
+            return "Floor: " + floor + " | " + "Guests: " + numGuests + " | " + "To: " + destination;
+        }
         return "Floor: " + floor + " | " + "Guests: " + numGuests;
     }
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+package VirtualGuests;
+
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+/**
+ * Bounded lock-free ring buffer of requests for many producers and a single consumer.
+ * Producers claim slots with a compare-and-set on the tail and publish them through a
+ * per-slot sequence number, so enqueuing never takes a lock. The consumer (the stepping
+ * thread) drains published slots in batches.
+ */
+public class RequestRing {
+    /**
+     * What producers do when the ring is full
+     */
+    public enum Backpressure {
+        BLOCK, //Spin, then park briefly, until the consumer frees a slot
+        REJECT //Fail the enqueue immediately
+    }
+
+    private static final int SPINS_BEFORE_PARK = 100; //Busy-wait attempts before parking when full
+
+    private final Request[] buffer; //Slots, power-of-two sized
+    private final AtomicLongArray sequence; //Per-slot publication sequence
+    private final int mask; //Index mask for buffer
+    private final AtomicLong tail = new AtomicLong(); //Next position producers claim
+    private long head; //Next position the consumer reads (consumer only)
+    private final Backpressure backpressure; //Full-ring policy
+
+    private final LongAdder enqueued = new LongAdder(); //Requests accepted
+    private final LongAdder rejected = new LongAdder(); //Requests refused while full
+    private final AtomicLong drained = new AtomicLong(); //Requests handed to the consumer
+    private final long startTime = System.nanoTime(); //Reference for throughput rates
+
+    /**
+     * Initializes an empty ring
+     * @param capacity number of slots, rounded up to a power of two
+     * @param backpressure policy when the ring is full
+     */
+    public RequestRing(int capacity, Backpressure backpressure) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.buffer = new Request[size];
+        this.sequence = new AtomicLongArray(size);
+        for (int i=0;i<size;i++) {
+            sequence.set(i, i);
+        }
+        this.mask = size - 1;
+        this.backpressure = backpressure;
+    }
+
+    /**
+     * Enqueues a request. Safe to call from any number of threads, but never from the
+     * consumer thread with BLOCK backpressure, since a full ring would wait on itself.
+     * @param r the request
+     * @return true if enqueued, false if rejected because the ring is full
+     */
+    public boolean offer(Request r) {
+        long pos;
+        int spins = 0;
+        while (true) {
+            pos = tail.get();
+            long diff = sequence.get((int) (pos & mask)) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+            }
+            else if (diff < 0) {
+                //Slot still holds an undrained request from the previous lap
+                if (backpressure == Backpressure.REJECT) {
+                    rejected.increment();
+                    return false;
+                }
+                if (spins++ < SPINS_BEFORE_PARK) Thread.onSpinWait();
+                else LockSupport.parkNanos(1000);
+            }
+        }
+        int idx = (int) (pos & mask);
+        buffer[idx] = r;
+        sequence.lazySet(idx, pos + 1); //Publish slot to consumer
+        enqueued.increment();
+        return true;
+    }
+
+    /**
+     * Hands up to max published requests to sink in enqueue order. Consumer thread only.
+     * @param sink receiver of requests
+     * @param max maximum number of requests to drain
+     * @return number of requests drained
+     */
+    public int drain(Consumer<Request> sink, int max) {
+        int n = 0;
+        while (n < max) {
+            int idx = (int) (head & mask);
+            if (sequence.get(idx) != head + 1) break; //Not yet published
+            Request r = buffer[idx];
+            buffer[idx] = null;
+            sequence.lazySet(idx, head + buffer.length); //Free slot for the next lap
+            head++;
+            n++;
+            sink.accept(r);
+        }
+        if (n > 0) drained.addAndGet(n);
+        return n;
+    }
+
+    /**
+     * Visits published requests without removing them. Consumer thread only.
+     * @param visitor receiver of requests
+     */
+    public void forEach(Consumer<Request> visitor) {
+        for (long pos = head; sequence.get((int) (pos & mask)) == pos + 1; pos++) {
+            visitor.accept(buffer[(int) (pos & mask)]);
+        }
+    }
+
+    /**
+     * Returns approximate number of requests waiting in the ring
+     * @return the number of claimed but undrained slots
+     */
+    public int getSize() {
+        return (int) (tail.get() - drained.get());
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    public long getDrained() {
+        return drained.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns average enqueue throughput since creation
+     * @return requests enqueued per second
+     */
+    public double getEnqueueRate() {
+        return enqueued.sum() / elapsedSeconds();
+    }
+
+    /**
+     * Returns average drain throughput since creation
+     * @return requests drained per second
+     */
+    public double getDrainRate() {
+        return drained.get() / elapsedSeconds();
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+    }
+}
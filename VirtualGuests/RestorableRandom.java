@@ -0,0 +1,42 @@
+package VirtualGuests;
+
+import java.util.*;
+
+/**
+ * Random number generator whose state can be saved and restored, for checkpoints.
+ * Runs the same generator as java.util.Random with the same seeding, so a seeded
+ * source draws exactly the numbers it drew before.
+ */
+public class RestorableRandom extends Random {
+    private static final long serialVersionUID = 1L; //Random is serializable, and so is state
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state; //Generator state, set by the superclass constructor through setSeed
+
+    /**
+     * @param seed the random seed
+     */
+    public RestorableRandom(long seed) {
+        super(seed);
+    }
+
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -0,0 +1,62 @@
+package VirtualGuests.SIMD;
+
+import VirtualGuests.*;
+import jdk.incubator.vector.*;
+
+/**
+ * PickupScorer on the incubating Vector API: scores a full vector of elevators per
+ * instruction and keeps a running minimum, with the id it came from, in every lane.
+ * Lanes only take a strictly lower score, so each holds its earliest best, and the lowest
+ * id among the lanes tied at the minimum is the same elevator the scalar scorer picks.
+ *
+ * Kept out of the main source tree since it needs the vector module at compile and run
+ * time; PickupScorer.load falls back to the scalar scorer without it. Build with
+ *   javac --add-modules jdk.incubator.vector -cp out -d out VirtualGuests/SIMD/*.java
+ * and run with --add-modules jdk.incubator.vector.
+ */
+public class VectorPickupScorer implements PickupScorer {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    public int choose(FleetState fleet, int floor) {
+        int[] floors = fleet.getFloors();
+        int[] directions = fleet.getDirections();
+        int[] free = fleet.getFreeCapacities();
+        int[] requests = fleet.getRequestCounts();
+        int numFloors = fleet.getNumFloors();
+        int n = floors.length;
+        int width = 2 * numFloors + 1;
+
+        IntVector bestScore = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+        IntVector bestId = IntVector.broadcast(SPECIES, -1);
+        IntVector id = IntVector.zero(SPECIES).addIndex(1);
+        IntVector step = IntVector.broadcast(SPECIES, SPECIES.length());
+        int bound = SPECIES.loopBound(n);
+        for (int i=0;i<bound;i+=SPECIES.length()) {
+            IntVector direction = IntVector.fromArray(SPECIES, directions, i);
+            IntVector d = IntVector.fromArray(SPECIES, floors, i).neg().add(floor);
+            VectorMask<Integer> toward = direction.mul(d).compare(VectorOperators.GT, 0)
+                    .or(direction.or(d).compare(VectorOperators.EQ, 0));
+            IntVector distance = d.abs();
+            IntVector score = distance.add(numFloors).blend(distance, toward)
+                    .mul(width).add(IntVector.fromArray(SPECIES, requests, i))
+                    .blend(Integer.MAX_VALUE, IntVector.fromArray(SPECIES, free, i).compare(VectorOperators.LE, 0));
+            VectorMask<Integer> better = score.compare(VectorOperators.LT, bestScore);
+            bestScore = bestScore.blend(score, better);
+            bestId = bestId.blend(id, better);
+            id = id.add(step);
+        }
+
+        int min = bestScore.reduceLanes(VectorOperators.MIN);
+        int best = min == Integer.MAX_VALUE ? -1
+                : bestId.blend(Integer.MAX_VALUE, bestScore.compare(VectorOperators.NE, min)).reduceLanes(VectorOperators.MIN);
+        //Leftover elevators past the last full vector, all with higher ids
+        for (int i=bound;i<n;i++) {
+            int score = PickupScorer.score(floor, numFloors, floors[i], directions[i], free[i], requests[i]);
+            if (score < min) {
+                min = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,25 @@
+package VirtualGuests;
+
+/**
+ * Plain-Java PickupScorer, used when the vector module isn't available. Scores elevators
+ * one at a time, keeping the first with the lowest score.
+ */
+public class ScalarPickupScorer implements PickupScorer {
+    public int choose(FleetState fleet, int floor) {
+        int[] floors = fleet.getFloors();
+        int[] directions = fleet.getDirections();
+        int[] free = fleet.getFreeCapacities();
+        int[] requests = fleet.getRequestCounts();
+        int numFloors = fleet.getNumFloors();
+        int best = -1;
+        int bestScore = Integer.MAX_VALUE;
+        for (int i=0;i<floors.length;i++) {
+            int score = PickupScorer.score(floor, numFloors, floors[i], directions[i], free[i], requests[i]);
+            if (score < bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
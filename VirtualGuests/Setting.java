@@ -1,11 +1,113 @@
 package VirtualGuests;
 
+import java.io.*;
+
+/**
+ * Configuration of a single simulation. Every dispatcher owns its own copy, so buildings
+ * with different settings can run side by side without a rebuild.
+ */
 public class Setting {
-    public static final int NUM_FLOORS = 30;
-    public static final int CARRYING_CAPACITY = 30; //people
-    public static final int SIMUL_TIMESTEP = 1000; //milliseconds
+    public int numFloors = 30;
+    public int carryingCapacity = 30; //people
+    public int numElevators = 0; //0 derives 1 + log2(numFloors/5)
+    public int simulTimestep = 1000; //milliseconds
+    public boolean realTime = true; //tick on wall clock via RealTimeDriver, otherwise discrete-event
 
-    public static final boolean AUTO_REQUESTS = true; //auto-generate requests
-    public static final int MAX_GENERATED_GUESTS = 40; //max number of guests to generate per floor
-}
+    public boolean parallelStepping = false; //update elevators concurrently each tick
+    public int requestQueueCapacity = 1 << 14; //hall calls buffered from other threads
+    public RequestRing.Backpressure queueBackpressure = RequestRing.Backpressure.BLOCK;
+    public boolean primitiveRequests = true; //bitset request handlers instead of TreeSet
+    public boolean batchAssignment = false; //match queued hall calls to elevators together, not one by one
+    public boolean destinationDispatch = false; //group calls that know their destination by shared stops (overrides batch)
+    public boolean demandParking = true; //park idle elevators where calls are expected, not the middle floor
+    public boolean fleetScoring = false; //score every elevator per hall call (SIMD if available) instead of using the floor index
+
+    public boolean autoRequests = true; //auto-generate requests
+    public int maxGeneratedGuests = 40; //max number of guests to generate per floor
+
+    /**
+     * Returns number of elevators, deriving it from the floor count if not set:
+     * one, plus one more per doubling of floors past 5
+     * @return the fleet size
+     */
+    public int getNumElevators() {
+        if (numElevators > 0) return numElevators;
+        return 1 + (int) (Math.log(numFloors / 5) / Math.log(2));
+    }
 
+    /**
+     * Returns an independent copy, e.g. to vary one knob in a sweep
+     * @return the copy
+     */
+    public Setting copy() {
+        Setting s = new Setting();
+        s.numFloors = numFloors;
+        s.carryingCapacity = carryingCapacity;
+        s.numElevators = numElevators;
+        s.simulTimestep = simulTimestep;
+        s.realTime = realTime;
+        s.parallelStepping = parallelStepping;
+        s.requestQueueCapacity = requestQueueCapacity;
+        s.queueBackpressure = queueBackpressure;
+        s.primitiveRequests = primitiveRequests;
+        s.batchAssignment = batchAssignment;
+        s.destinationDispatch = destinationDispatch;
+        s.demandParking = demandParking;
+        s.fleetScoring = fleetScoring;
+        s.autoRequests = autoRequests;
+        s.maxGeneratedGuests = maxGeneratedGuests;
+        return s;
+    }
+
+    /**
+     * Writes every field to a checkpoint
+     * @param out the checkpoint
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(numFloors);
+        out.writeInt(carryingCapacity);
+        out.writeInt(numElevators);
+        out.writeInt(simulTimestep);
+        out.writeBoolean(realTime);
+        out.writeBoolean(parallelStepping);
+        out.writeInt(requestQueueCapacity);
+        out.writeUTF(queueBackpressure.name());
+        out.writeBoolean(primitiveRequests);
+        out.writeBoolean(batchAssignment);
+        out.writeBoolean(destinationDispatch);
+        out.writeBoolean(demandParking);
+        out.writeBoolean(fleetScoring);
+        out.writeBoolean(autoRequests);
+        out.writeInt(maxGeneratedGuests);
+    }
+
+    /**
+     * Reads a setting written by writeState
+     * @param in the checkpoint
+     * @return the setting
+     */
+    public static Setting readState(DataInput in) throws IOException {
+        Setting s = new Setting();
+        s.numFloors = in.readInt();
+        s.carryingCapacity = in.readInt();
+        s.numElevators = in.readInt();
+        s.simulTimestep = in.readInt();
+        s.realTime = in.readBoolean();
+        s.parallelStepping = in.readBoolean();
+        s.requestQueueCapacity = in.readInt();
+        s.queueBackpressure = RequestRing.Backpressure.valueOf(in.readUTF());
+        s.primitiveRequests = in.readBoolean();
+        s.batchAssignment = in.readBoolean();
+        s.destinationDispatch = in.readBoolean();
+        s.demandParking = in.readBoolean();
+        s.fleetScoring = in.readBoolean();
+        s.autoRequests = in.readBoolean();
+        s.maxGeneratedGuests = in.readInt();
+        return s;
+    }
+
+    public String toString() {
+        return "floors=" + numFloors + " capacity=" + carryingCapacity + " elevators=" + getNumElevators()
+                + " maxGuests=" + maxGeneratedGuests;
+    }
+}
@@ -0,0 +1,81 @@
+package VirtualGuests;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs many independent buildings at once for capacity planning. Every building gets its
+ * own Dispatcher and seeded generator, shards are spread over all cores, and their
+ * statistics are merged once every building has finished.
+ */
+public class ShardedRunner {
+    private Setting setting; //Configuration shared by every building
+    private int numBuildings; //Number of independent buildings to simulate
+    private long seed; //Base seed, building i uses seed + i
+    private long duration; //Simulated milliseconds per building
+
+    /**
+     * @param setting configuration of every building
+     * @param numBuildings number of buildings to simulate
+     * @param seed base seed for the generators
+     * @param duration simulated milliseconds to run each building for
+     */
+    public ShardedRunner(Setting setting, int numBuildings, long seed, long duration) {
+        this.setting = setting;
+        this.numBuildings = numBuildings;
+        this.seed = seed;
+        this.duration = duration;
+    }
+
+    /**
+     * Simulates every building on a pool sized to the number of cores.
+     * Shards share nothing, so they scale with cores.
+     * @return statistics merged across all buildings
+     */
+    public Statistics run() throws InterruptedException, ExecutionException {
+        int threads = Math.min(numBuildings, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Statistics>> shards = new ArrayList<>();
+            for (int i=0;i<numBuildings;i++) {
+                long shardSeed = seed + i;
+                shards.add(pool.submit(() -> runBuilding(shardSeed)));
+            }
+
+            Statistics total = new Statistics();
+            for (Future<Statistics> shard: shards) {
+                total.merge(shard.get());
+            }
+            return total;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Simulates a single building in discrete-event time
+     * @param shardSeed seed of the building's generator
+     * @return the building's statistics
+     */
+    private Statistics runBuilding(long shardSeed) {
+        Dispatcher dispatcher = new Dispatcher(setting.copy(), shardSeed, false);
+        dispatcher.runUntil(duration);
+        return dispatcher.getStatistics();
+    }
+
+    /**
+     * Usage: ShardedRunner [buildings] [simulated hours] [seed]
+     */
+    public static void main(String args[]) throws Exception {
+        int buildings = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        double hours = args.length > 1 ? Double.parseDouble(args[1]) : 24;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        long start = System.nanoTime();
+        Statistics total = new ShardedRunner(new Setting(), buildings, seed, (long) (hours * 3_600_000)).run();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println(total);
+        System.out.println("Simulated " + buildings + " buildings in " + elapsed + " ms");
+    }
+}
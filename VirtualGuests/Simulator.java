@@ -1,13 +1,37 @@
 package VirtualGuests;
 
+import java.io.*;
 import java.util.*;
 
 /*
  * Simulates the arrival of virtual guests by making random number of requests at random
  * floors to stress-test the elevator system. Replaces user prompting as a means of input.
+ * A new batch of pick-ups is generated every time an elevator goes idle.
  */
-public final class Simulator {
-    private static Random random = new Random();
+public final class Simulator implements TrafficSource {
+    private RestorableRandom random; //Source of randomness, seeded for reproducible runs
+    private int pendingBatches; //Elevators that went idle since the last pick-up batch
+    private int numFloors; //Highest floor to generate requests for
+    private int maxGuests; //Max number of guests to generate per floor
+
+    /**
+     * Initializes a simulator with an unpredictable seed
+     * @param setting configuration of the simulation
+     */
+    public Simulator(Setting setting) {
+        this(setting, new Random().nextLong());
+    }
+
+    /**
+     * Initializes a simulator that generates the same guests for the same seed
+     * @param setting configuration of the simulation
+     * @param seed the random seed
+     */
+    public Simulator(Setting setting, long seed) {
+        this.random = new RestorableRandom(seed);
+        this.numFloors = setting.numFloors;
+        this.maxGuests = setting.maxGeneratedGuests;
+    }
 
     /**
      * Generates a random number of drop-off requests across different floors
@@ -15,13 +39,14 @@ public final class Simulator {
      * 
      * @return the list of drop-off requests
      */
-    public static Vector<Request> generateDropoffs(Elevator e) {
+    public Vector<Request> generateDropoffs(Elevator e, long time) {
+        pendingBatches++;
         Vector<Request> dropoffs = new Vector<>();
-        boolean[] vis = new boolean[Setting.NUM_FLOORS+1];
+        boolean[] vis = new boolean[numFloors+1];
         int guestSum = 0;
-        for (int i=0;i<random.nextInt(Setting.NUM_FLOORS+1);i++) {
+        for (int i=0;i<random.nextInt(numFloors+1);i++) {
             if (guestSum >= e.getCapacity()) break; //Emptied carriage
-            int floor = random.nextInt(Setting.NUM_FLOORS)+1;
+            int floor = random.nextInt(numFloors)+1;
             if (!vis[floor]) {
                 vis[floor] = true;
                 int numGuests = random.nextInt(e.getCapacity()-guestSum)+1;
@@ -33,22 +58,35 @@ public final class Simulator {
     }
 
     /**
-     * Generates a random number of pick-up requests across different floors
-     * for a specific elevator. Capped at max guests per floor outlined in settings.
+     * Generates a random number of pick-up requests across different floors,
+     * one batch for every elevator that went idle since the last call (normally one).
+     * Capped at max guests per floor outlined in settings.
      * 
      * @return the list of pick-up requests
      */
-    public static Vector<Request> generatePickups() {
+    public Vector<Request> generatePickups(long time) {
         Vector<Request> pickups = new Vector<>();
-        boolean[] vis = new boolean[Setting.NUM_FLOORS+1];
-        for (int i=0;i<random.nextInt(Setting.NUM_FLOORS+1);i++) {
-            int floor = random.nextInt(Setting.NUM_FLOORS)+1;
-            if (!vis[floor]) {
-                vis[floor] = true;
-                int numGuests = random.nextInt(Setting.MAX_GENERATED_GUESTS)+1;
-                pickups.add(new Request(floor, -1, numGuests));
+        for (;pendingBatches>0;pendingBatches--) {
+            boolean[] vis = new boolean[numFloors+1];
+            for (int i=0;i<random.nextInt(numFloors+1);i++) {
+                int floor = random.nextInt(numFloors)+1;
+                if (!vis[floor]) {
+                    vis[floor] = true;
+                    int numGuests = random.nextInt(maxGuests)+1;
+                    pickups.add(new Request(floor, -1, numGuests));
+                }
             }
         }
         return pickups;
     }
+
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(random.getState());
+        out.writeInt(pendingBatches);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        random.setState(in.readLong());
+        pendingBatches = in.readInt();
+    }
 }
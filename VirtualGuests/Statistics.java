@@ -0,0 +1,179 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Running totals for a simulation. Counters may be updated from several threads at
+ * once during parallel stepping, and statistics of separate buildings can be merged.
+ */
+public class Statistics {
+    private final LongAdder ticks = new LongAdder(); //Frames stepped
+    private final LongAdder actions = new LongAdder(); //Elevator actions (floors addressed)
+    private final LongAdder floorsTraveled = new LongAdder(); //Total floors moved by all elevators
+    private final LongAdder guestsPickedUp = new LongAdder(); //Guests boarded
+    private final LongAdder guestsDroppedOff = new LongAdder(); //Guests that exited
+    private final LongAdder guestsDumped = new LongAdder(); //Guests handed back for lack of capacity
+    private final LongAdder simulatedTime = new LongAdder(); //Simulated milliseconds (summed across buildings)
+    private final LatencyHistogram waitTime = new LatencyHistogram(); //Hall call to pick-up, per guest (ms)
+    private final LatencyHistogram rideTime = new LatencyHistogram(); //Pick-up to drop-off, per guest (ms)
+    private final AtomicLong queueDepth = new AtomicLong(); //Hall calls awaiting assignment right now
+    private final AtomicLong maxQueueDepth = new AtomicLong(); //Most hall calls ever awaiting assignment
+
+    public void recordTick(long elapsed) {
+        ticks.increment();
+        simulatedTime.add(elapsed);
+    }
+
+    public void recordAction(int floorsMoved) {
+        actions.increment();
+        floorsTraveled.add(floorsMoved);
+    }
+
+    public void recordPickup(int numGuests, int leftover) {
+        guestsPickedUp.add(numGuests);
+        guestsDumped.add(leftover);
+    }
+
+    public void recordDropoff(int numGuests) {
+        guestsDroppedOff.add(numGuests);
+    }
+
+    public void recordWait(long millis, int numGuests) {
+        waitTime.record(millis, numGuests);
+    }
+
+    public void recordRide(long millis, int numGuests) {
+        rideTime.record(millis, numGuests);
+    }
+
+    public void recordQueueDepth(int depth) {
+        queueDepth.set(depth);
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * Adds another simulation's totals into these
+     * @param other the statistics to merge in
+     */
+    public void merge(Statistics other) {
+        ticks.add(other.getTicks());
+        actions.add(other.getActions());
+        floorsTraveled.add(other.getFloorsTraveled());
+        guestsPickedUp.add(other.getGuestsPickedUp());
+        guestsDroppedOff.add(other.getGuestsDroppedOff());
+        guestsDumped.add(other.getGuestsDumped());
+        simulatedTime.add(other.getSimulatedTime());
+        waitTime.merge(other.waitTime);
+        rideTime.merge(other.rideTime);
+        queueDepth.addAndGet(other.getQueueDepth());
+        maxQueueDepth.accumulateAndGet(other.getMaxQueueDepth(), Math::max);
+    }
+
+    /**
+     * Writes the totals to a checkpoint
+     * @param out the checkpoint
+     */
+    public void writeState(DataOutput out) throws IOException {
+        for (LongAdder counter: counters()) {
+            out.writeLong(counter.sum());
+        }
+        waitTime.writeState(out);
+        rideTime.writeState(out);
+        out.writeLong(queueDepth.get());
+        out.writeLong(maxQueueDepth.get());
+    }
+
+    /**
+     * Replaces the totals with those read from a checkpoint
+     * @param in the checkpoint
+     */
+    public void readState(DataInput in) throws IOException {
+        for (LongAdder counter: counters()) {
+            counter.reset();
+            counter.add(in.readLong());
+        }
+        waitTime.readState(in);
+        rideTime.readState(in);
+        queueDepth.set(in.readLong());
+        maxQueueDepth.set(in.readLong());
+    }
+
+    /**
+     * Running counters in checkpoint order
+     */
+    private LongAdder[] counters() {
+        return new LongAdder[] {ticks, actions, floorsTraveled, guestsPickedUp, guestsDroppedOff, guestsDumped, simulatedTime};
+    }
+
+    public long getTicks() {
+        return ticks.sum();
+    }
+
+    public long getActions() {
+        return actions.sum();
+    }
+
+    public long getFloorsTraveled() {
+        return floorsTraveled.sum();
+    }
+
+    public long getGuestsPickedUp() {
+        return guestsPickedUp.sum();
+    }
+
+    public long getGuestsDroppedOff() {
+        return guestsDroppedOff.sum();
+    }
+
+    public long getGuestsDumped() {
+        return guestsDumped.sum();
+    }
+
+    public long getSimulatedTime() {
+        return simulatedTime.sum();
+    }
+
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    public LatencyHistogram getRideTime() {
+        return rideTime;
+    }
+
+    public long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Returns delivered guests per simulated hour, averaged over buildings when merged
+     * @return guests dropped off per hour
+     */
+    public double getPassengersPerHour() {
+        long time = getSimulatedTime();
+        return time == 0 ? 0 : getGuestsDroppedOff() / (time / 3_600_000.0);
+    }
+
+    public String toString() {
+        String ret = "";
+        ret += "Simulation Statistics:\n-----------------------------\n";
+        ret += "Ticks: " + getTicks() + "\n";
+        ret += "Simulated Hours: " + String.format("%.2f", getSimulatedTime() / 3_600_000.0) + "\n";
+        ret += "Elevator Actions: " + getActions() + "\n";
+        ret += "Floors Traveled: " + getFloorsTraveled() + "\n";
+        ret += "Guests Picked Up: " + getGuestsPickedUp() + "\n";
+        ret += "Guests Dropped Off: " + getGuestsDroppedOff() + "\n";
+        ret += "Guests Dumped Back: " + getGuestsDumped() + "\n";
+        ret += "Passengers/Hour: " + String.format("%.1f", getPassengersPerHour()) + "\n";
+        ret += "Wait Time (ms): " + waitTime + "\n";
+        ret += "Ride Time (ms): " + rideTime + "\n";
+        ret += "Queue Depth: " + getQueueDepth() + " (max " + getMaxQueueDepth() + ")\n";
+        ret += "-----------------------------\n";
+        return ret;
+    }
+}
@@ -0,0 +1,120 @@
+package VirtualGuests;
+
+import java.util.*;
+
+/**
+ * Secondary index of requests ordered by timestamp, kept next to a floor-ordered handler.
+ * Entries are packed into a primitive binary heap and removed lazily: completing a request
+ * leaves its entry behind, and stale entries are skipped when they reach the top.
+ */
+public class TimestampIndex {
+    /**
+     * Confirms that an entry still matches a live request in the owning handler
+     */
+    public interface Validator {
+        boolean isCurrent(int floor, int timestamp);
+    }
+
+    private long[] heap; //Min-heap of (timestamp << 32 | floor)
+    private int size; //Number of entries in the heap, including stale ones
+    private Validator validator; //Owning handler's liveness check
+
+    /**
+     * Initializes an empty index
+     * @param validator check used to discard completed entries
+     */
+    public TimestampIndex(Validator validator) {
+        this.heap = new long[16];
+        this.size = 0;
+        this.validator = validator;
+    }
+
+    /**
+     * Records a request in the index in O(log n)
+     * @param floor the floor of the request
+     * @param timestamp timestamp of the request
+     */
+    public void add(int floor, int timestamp) {
+        if (size == heap.length) {
+            purge();
+            //Only grow if most entries are still live
+            if (size > heap.length / 2) {
+                heap = Arrays.copyOf(heap, heap.length * 2);
+            }
+        }
+        heap[size] = ((long) timestamp << 32) | (floor & 0xFFFFFFFFL);
+        siftUp(size);
+        size++;
+    }
+
+    /**
+     * Returns the floor of the live request with earliest timestamp, dropping
+     * stale entries along the way (amortized O(log n))
+     * @return the floor, or -1 if there are no live requests
+     */
+    public int peekFloor() {
+        while (size > 0) {
+            long top = heap[0];
+            int floor = (int) top;
+            if (validator.isCurrent(floor, (int) (top >> 32))) {
+                return floor;
+            }
+            removeTop();
+        }
+        return -1;
+    }
+
+    /**
+     * Removes every entry, live or stale
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drops all stale entries and rebuilds the heap in O(n)
+     */
+    private void purge() {
+        int live = 0;
+        for (int i=0;i<size;i++) {
+            long entry = heap[i];
+            if (validator.isCurrent((int) entry, (int) (entry >> 32))) {
+                heap[live++] = entry;
+            }
+        }
+        size = live;
+        for (int i=size/2-1;i>=0;i--) {
+            siftDown(i);
+        }
+    }
+
+    private void removeTop() {
+        size--;
+        heap[0] = heap[size];
+        siftDown(0);
+    }
+
+    private void siftUp(int i) {
+        long entry = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private void siftDown(int i) {
+        long entry = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (entry <= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+    }
+}
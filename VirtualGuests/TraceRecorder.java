@@ -0,0 +1,89 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Records every hall call and car call produced by a traffic source into a compact binary
+ * trace, so a run can be reproduced exactly or replayed against another dispatcher.
+ *
+ * Format (big-endian): an 8-byte header (magic "ELTR", version, reserved) followed by
+ * fixed 16-byte records: time (long, ms), floor (short), guests (unsigned short),
+ * target (short) and destination (short, -1 if unknown, as in traces from before
+ * destination dispatch). The target is the elevator id for a car call, HALL_CALL for a
+ * hall call, or BATCH_END for the last hall call of a batch. An empty
+ * batch is written as a lone BATCH_END record with no guests, so replay can hand hall
+ * calls back in exactly the batches they were generated in.
+ */
+public class TraceRecorder implements TrafficSource, Closeable {
+    public static final int MAGIC = 0x454C5452; //"ELTR"
+    public static final short VERSION = 1;
+    public static final int HEADER_BYTES = 8;
+    public static final int RECORD_BYTES = 16;
+    public static final short HALL_CALL = -1;
+    public static final short BATCH_END = -2;
+
+    private TrafficSource source; //Source whose requests are recorded
+    private DataOutputStream out; //Buffered trace file
+    private long numRecords; //Records written so far
+
+    /**
+     * Starts a trace file, overwriting any existing one
+     * @param source the source to record
+     * @param path the trace file
+     */
+    public TraceRecorder(TrafficSource source, String path) throws IOException {
+        this.source = source;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+    }
+
+    public Vector<Request> generatePickups(long time) {
+        Vector<Request> pickups = source.generatePickups(time);
+        for (int i=0;i<pickups.size();i++) {
+            write(time, pickups.get(i), i == pickups.size() - 1 ? BATCH_END : HALL_CALL);
+        }
+        if (pickups.isEmpty()) {
+            write(time, new Request(0, -1, 0), BATCH_END);
+        }
+        return pickups;
+    }
+
+    public Vector<Request> generateDropoffs(Elevator e, long time) {
+        Vector<Request> dropoffs = source.generateDropoffs(e, time);
+        for (Request r: dropoffs) {
+            write(time, r, e.getId());
+        }
+        return dropoffs;
+    }
+
+    public long nextArrivalTime(long time) {
+        return source.nextArrivalTime(time);
+    }
+
+    private void write(long time, Request r, int target) {
+        try {
+            out.writeLong(time);
+            out.writeShort(r.floor);
+            out.writeShort(Math.min(r.numGuests, 0xFFFF));
+            out.writeShort(target);
+            out.writeShort(r.destination);
+            numRecords++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * Flushes and closes the trace file
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+}
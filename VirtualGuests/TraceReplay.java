@@ -0,0 +1,186 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Replays a binary trace written by TraceRecorder. The file is memory-mapped in large
+ * chunks and decoded in place, so traces of any length replay at disk speed. Hall calls
+ * are released once their recorded time is reached; car calls wait for their elevator
+ * to go idle, and are capped at the guests actually onboard in case the dispatcher under
+ * test made different decisions than the recorded one.
+ *
+ * Records from earlier ticks are always released. Within the current tick, hall calls are
+ * released one recorded batch at a time and car calls only to their own elevator, so a
+ * replay against the recording dispatcher reproduces its run exactly.
+ */
+public class TraceReplay implements TrafficSource, Closeable {
+    private static final long CHUNK_BYTES = (1L << 30) / TraceRecorder.RECORD_BYTES * TraceRecorder.RECORD_BYTES;
+
+    private FileChannel channel; //Open trace file
+    private long fileSize; //Length of trace file
+    private long chunkStart; //File offset of the mapped chunk
+    private MappedByteBuffer chunk; //Currently mapped part of the file
+
+    private boolean hasNext; //Whether a lookahead record is loaded
+    private long nextTime; //Lookahead record fields
+    private int nextFloor;
+    private int nextGuests;
+    private int nextTarget;
+    private int nextDestination;
+
+    private Vector<Request> pickups; //Hall calls released but not yet returned
+    private ArrayList<ArrayDeque<Request>> dropoffs; //Car calls released per elevator
+
+    /**
+     * Opens a trace for replay
+     * @param path the trace file
+     */
+    public TraceReplay(String path) throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(TraceRecorder.HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0);
+        header.flip();
+        if (header.remaining() < TraceRecorder.HEADER_BYTES || header.getInt() != TraceRecorder.MAGIC) {
+            throw new IOException("Not an elevator trace: " + path);
+        }
+        short version = header.getShort();
+        if (version != TraceRecorder.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        chunkStart = TraceRecorder.HEADER_BYTES;
+        map();
+        pickups = new Vector<>();
+        dropoffs = new ArrayList<>();
+        readNext();
+    }
+
+    public Vector<Request> generatePickups(long time) {
+        while (hasNext && nextTime <= time) {
+            boolean current = nextTime == time;
+            if (current && nextTarget >= 0) break; //Car call belongs to a later prompt this tick
+            boolean batchEnd = nextTarget == TraceRecorder.BATCH_END;
+            release();
+            if (current && batchEnd) break;
+        }
+        Vector<Request> ret = pickups;
+        pickups = new Vector<>();
+        return ret;
+    }
+
+    public Vector<Request> generateDropoffs(Elevator e, long time) {
+        while (hasNext && (nextTime < time || (nextTime == time && nextTarget == e.getId()))) {
+            release();
+        }
+        Vector<Request> ret = new Vector<>();
+        if (e.getId() >= dropoffs.size()) return ret;
+        ArrayDeque<Request> pending = dropoffs.get(e.getId());
+        int guestsLeft = e.getCapacity();
+        while (!pending.isEmpty() && guestsLeft > 0) {
+            Request r = pending.poll();
+            r.numGuests = Math.min(r.numGuests, guestsLeft);
+            guestsLeft -= r.numGuests;
+            ret.add(r);
+        }
+        return ret;
+    }
+
+    /**
+     * Records are written when the recording dispatcher polled, so replay polls at the same times
+     */
+    public long nextArrivalTime(long time) {
+        return hasNext ? nextTime : Long.MAX_VALUE;
+    }
+
+    /**
+     * Saves the offset of the lookahead record and the car calls released but not yet
+     * handed to their elevators
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeLong(hasNext ? chunkStart + chunk.position() - TraceRecorder.RECORD_BYTES : fileSize);
+        out.writeInt(dropoffs.size());
+        for (ArrayDeque<Request> pending: dropoffs) {
+            out.writeInt(pending.size());
+            for (Request r: pending) {
+                out.writeInt(r.floor);
+                out.writeInt(r.numGuests);
+                out.writeLong(r.callTime);
+            }
+        }
+    }
+
+    public void readState(DataInput in) throws IOException {
+        chunkStart = in.readLong();
+        map();
+        readNext();
+        dropoffs.clear();
+        int numElevators = in.readInt();
+        for (int e=0;e<numElevators;e++) {
+            ArrayDeque<Request> pending = new ArrayDeque<>();
+            int n = in.readInt();
+            for (int i=0;i<n;i++) {
+                pending.add(new Request(in.readInt(), -1, in.readInt(), in.readLong()));
+            }
+            dropoffs.add(pending);
+        }
+    }
+
+    /**
+     * Checks whether every record has been released
+     * @return true if the end of the trace was reached
+     */
+    public boolean isFinished() {
+        return !hasNext;
+    }
+
+    /**
+     * Hands the lookahead record to the pending hall or car calls and reads the next one
+     */
+    private void release() {
+        if (nextTarget >= 0) {
+            while (dropoffs.size() <= nextTarget) dropoffs.add(new ArrayDeque<>());
+            dropoffs.get(nextTarget).add(new Request(nextFloor, -1, nextGuests, nextTime));
+        }
+        else if (nextGuests > 0) {
+            pickups.add(new Request(nextFloor, -1, nextGuests, nextTime, nextDestination));
+        }
+        readNext();
+    }
+
+    /**
+     * Decodes the next record into the lookahead fields, mapping the next chunk if needed
+     */
+    private void readNext() {
+        if (chunk.remaining() < TraceRecorder.RECORD_BYTES) {
+            chunkStart += chunk.position();
+            if (fileSize - chunkStart < TraceRecorder.RECORD_BYTES) {
+                hasNext = false;
+                return;
+            }
+            map();
+        }
+        nextTime = chunk.getLong();
+        nextFloor = chunk.getShort();
+        nextGuests = chunk.getShort() & 0xFFFF;
+        nextTarget = chunk.getShort();
+        nextDestination = chunk.getShort();
+        hasNext = true;
+    }
+
+    private void map() {
+        try {
+            long length = Math.min(CHUNK_BYTES, fileSize - chunkStart);
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,161 @@
+package VirtualGuests;
+
+import java.util.*;
+
+/**
+ * Origin-destination mix of passenger trips in a building, e.g. morning up-peak. Trips are
+ * sampled in O(1) with alias tables, so generating millions of arrivals stays cheap.
+ * Floor 1 is the lobby.
+ */
+public class TrafficProfile {
+    private int numFloors; //Highest floor
+    private AliasTable origins; //Origin floor distribution
+    private AliasTable[] destinations; //Destination distribution per origin
+    private AliasTable anyDestination; //Destination distribution over all trips
+
+    /**
+     * Initializes a profile from an origin-destination matrix
+     * @param od relative trip weights per [origin][destination], sized numFloors + 1 with row
+     *     and column 0 unused
+     */
+    public TrafficProfile(double[][] od) {
+        this.numFloors = od.length - 1;
+        double[] originWeights = new double[numFloors + 1];
+        double[] destWeights = new double[numFloors + 1];
+        destinations = new AliasTable[numFloors + 1];
+        for (int o=1;o<=numFloors;o++) {
+            for (int d=1;d<=numFloors;d++) {
+                originWeights[o] += od[o][d];
+                destWeights[d] += od[o][d];
+            }
+            if (originWeights[o] > 0) destinations[o] = new AliasTable(od[o]);
+        }
+        origins = new AliasTable(originWeights);
+        anyDestination = new AliasTable(destWeights);
+    }
+
+    /**
+     * Samples where the next guest calls from
+     * @param random source of randomness
+     * @return the origin floor
+     */
+    public int sampleOrigin(Random random) {
+        return origins.sample(random);
+    }
+
+    /**
+     * Samples where a guest from an origin goes
+     * @param origin the origin floor
+     * @param random source of randomness
+     * @return the destination floor
+     */
+    public int sampleDestination(int origin, Random random) {
+        if (destinations[origin] == null) return anyDestination.sample(random);
+        return destinations[origin].sample(random);
+    }
+
+    /**
+     * Samples a destination over all trips, for guests whose origin isn't known
+     * @param random source of randomness
+     * @return the destination floor
+     */
+    public int sampleDestination(Random random) {
+        return anyDestination.sample(random);
+    }
+
+    public int getNumFloors() {
+        return numFloors;
+    }
+
+    /**
+     * Morning up-peak: mostly lobby to upper floors
+     */
+    public static TrafficProfile upPeak(int numFloors) {
+        return mix(numFloors, 0.85, 0.05, 0.10);
+    }
+
+    /**
+     * Evening down-peak: mostly upper floors to lobby
+     */
+    public static TrafficProfile downPeak(int numFloors) {
+        return mix(numFloors, 0.05, 0.85, 0.10);
+    }
+
+    /**
+     * Lunch: heavy traffic both out of and back into the building
+     */
+    public static TrafficProfile lunch(int numFloors) {
+        return mix(numFloors, 0.45, 0.45, 0.10);
+    }
+
+    /**
+     * Interfloor: trips between upper floors only
+     */
+    public static TrafficProfile interfloor(int numFloors) {
+        return mix(numFloors, 0, 0, 1);
+    }
+
+    /**
+     * Blends lobby-in, lobby-out and interfloor trips, each spread uniformly over upper floors
+     * @param numFloors highest floor
+     * @param incoming share of trips from the lobby up
+     * @param outgoing share of trips down to the lobby
+     * @param interfloor share of trips between upper floors
+     */
+    public static TrafficProfile mix(int numFloors, double incoming, double outgoing, double interfloor) {
+        double[][] od = new double[numFloors + 1][numFloors + 1];
+        int upper = numFloors - 1;
+        for (int f=2;f<=numFloors;f++) {
+            od[1][f] += incoming / upper;
+            od[f][1] += outgoing / upper;
+            for (int g=2;g<=numFloors;g++) {
+                if (f != g && upper > 1) od[f][g] += interfloor / (upper * (upper - 1.0));
+            }
+        }
+        return new TrafficProfile(od);
+    }
+
+    /**
+     * Walker's alias method: O(n) setup, O(1) sampling from a discrete distribution
+     */
+    private static class AliasTable {
+        private double[] prob; //Chance of keeping column i rather than taking its alias
+        private int[] alias; //Fallback outcome of column i
+
+        AliasTable(double[] weights) {
+            int n = weights.length;
+            prob = new double[n];
+            alias = new int[n];
+            double total = 0;
+            for (double w: weights) total += w;
+            if (total <= 0) throw new IllegalArgumentException("Distribution has no weight");
+
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int numSmall = 0;
+            int numLarge = 0;
+            double[] scaled = new double[n];
+            for (int i=0;i<n;i++) {
+                scaled[i] = weights[i] * n / total;
+                if (scaled[i] < 1) small[numSmall++] = i;
+                else large[numLarge++] = i;
+            }
+            while (numSmall > 0 && numLarge > 0) {
+                int s = small[--numSmall];
+                int l = large[--numLarge];
+                prob[s] = scaled[s];
+                alias[s] = l;
+                scaled[l] -= 1 - scaled[s];
+                if (scaled[l] < 1) small[numSmall++] = l;
+                else large[numLarge++] = l;
+            }
+            while (numLarge > 0) prob[large[--numLarge]] = 1;
+            while (numSmall > 0) prob[small[--numSmall]] = 1; //Rounding leftovers
+        }
+
+        int sample(Random random) {
+            int i = random.nextInt(prob.length);
+            return random.nextDouble() < prob[i] ? i : alias[i];
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package VirtualGuests;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Automatic source of guest requests, used in place of user prompting.
+ */
+public interface TrafficSource {
+    /**
+     * Returns hall calls that have arrived by the given time. Polled whenever an elevator goes
+     * idle, and at the times given by nextArrivalTime.
+     * @param time current simulated time in milliseconds
+     * @return the new pick-up requests (possibly empty)
+     */
+    Vector<Request> generatePickups(long time);
+
+    /**
+     * Returns car calls for guests onboard an elevator that has gone idle.
+     * Dropped off guests must not exceed the elevator's current guest count.
+     * @param e the idle elevator
+     * @param time current simulated time in milliseconds
+     * @return the new drop-off requests (possibly empty)
+     */
+    Vector<Request> generateDropoffs(Elevator e, long time);
+
+    /**
+     * Tells the dispatcher when to poll for hall calls next, so elevators with nothing to do
+     * can wait without being updated every timestep
+     * @param time current simulated time in milliseconds
+     * @return time of the next hall call not yet returned, Long.MAX_VALUE if none will come,
+     *         or -1 if unknown (idle elevators then keep polling every timestep)
+     */
+    default long nextArrivalTime(long time) {
+        return -1;
+    }
+
+    /**
+     * Writes the source's position (random state, read offset, pending calls) to a checkpoint
+     * @param out the checkpoint
+     * @throws UnsupportedOperationException if the source can't be resumed
+     */
+    default void writeState(DataOutput out) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't be checkpointed");
+    }
+
+    /**
+     * Resumes a source built the same way as the checkpointed one from its saved position
+     * @param in the checkpoint
+     * @throws UnsupportedOperationException if the source can't be resumed
+     */
+    default void readState(DataInput in) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't be checkpointed");
+    }
+}
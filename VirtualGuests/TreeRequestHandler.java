@@ -0,0 +1,138 @@
+package VirtualGuests;
+
+import java.util.*;
+
+/**
+ * Tracks elevator requests to specific floors at given times, backed by a TreeSet.
+ */
+public class TreeRequestHandler implements RequestHandler {
+    private TreeSet<Request> req; //Set of all requests sorted by floor
+    private Request[] byFloor; //Same requests indexed by floor, for merging without a tree lookup
+    private TimestampIndex byTimestamp; //Same requests ordered by timestamp
+
+    /**
+     * Initializes a new RequestTracker with empty set of requests
+     */
+    public TreeRequestHandler() {
+        req = new TreeSet<>();
+        byFloor = new Request[16];
+        byTimestamp = new TimestampIndex(this::isCurrent);
+    }
+
+    /**
+     * Adds a request to the current set, merging into the floor's request in place if it has one
+     * @param floor the floor to add
+     * @param timestamp timestamp of action
+     * @param numGuests the number of guests
+     */
+    public void addRequest(int floor, int timestamp, int numGuests) {
+        Request r = getRequest(floor);
+        if (r != null) {
+            r.numGuests = (int) Math.min((long) r.numGuests + numGuests, Integer.MAX_VALUE);
+            if (timestamp < r.timestamp) {
+                r.timestamp = timestamp;
+                byTimestamp.add(floor, timestamp);
+            }
+            return;
+        }
+        r = new Request(floor, timestamp, numGuests);
+        req.add(r);
+        if (floor >= byFloor.length) {
+            byFloor = Arrays.copyOf(byFloor, Math.max(floor + 1, byFloor.length * 2));
+        }
+        byFloor[floor] = r;
+        byTimestamp.add(floor, timestamp);
+    }
+
+    /**
+     * Checks whether a timestamp index entry still refers to a live request
+     */
+    private boolean isCurrent(int floor, int timestamp) {
+        Request r = getRequest(floor);
+        return r != null && r.timestamp == timestamp;
+    }
+
+    /**
+     * Returns Request object associated with floor
+     * @param floor the floor
+     * @return the request object, or null if not found
+     */
+    public Request getRequest(int floor) {
+        if (floor < 0 || floor >= byFloor.length) return null;
+        return byFloor[floor];
+    }
+
+    public boolean hasRequest(int floor) {
+        return getRequest(floor) != null;
+    }
+
+    public int getGuests(int floor) {
+        Request r = getRequest(floor);
+        if (r == null) return 0;
+        return r.numGuests;
+    }
+
+    public int getTimestamp(int floor) {
+        Request r = getRequest(floor);
+        if (r == null) return -1;
+        return r.timestamp;
+    }
+
+    /**
+     * Completes a request to a floor by removing it from the set.
+     * If request does not exist, does nothing.
+     * 
+     * @param floor the floor to complete
+     * @return true if a request was removed, false if not found
+     */
+    public boolean completeRequest(int floor) {
+        Request r = getRequest(floor);
+        if (r == null) return false;
+        byFloor[floor] = null;
+        return req.remove(r);
+    }
+
+    /**
+     * Computes nearest floor request to current floor given transit direction.
+     * If direction is 0 (stationary), then returns the floor with earliest timestamp.
+     * If the request set is empty, the middle floor (N/2) is returned instead.
+     * 
+     * @param currentFloor the elevator's current floor
+     * @param direction the elevator's transit direction
+     * @return next immediate floor, or -1 if none exist
+     */
+    public int getNextFloor(int currentFloor, int direction) {
+        if (direction < 0) {
+            //First request below current floor
+            Request next = req.floor(new Request(currentFloor, 0, 0));
+            if (next == null) return -1;
+            return next.floor;
+        }
+        else if (direction > 0) {
+            //First request above current floor
+            Request next = req.ceiling(new Request(currentFloor, 0, 0));
+            if (next == null) return -1;
+            return next.floor;
+        }
+        else {
+            //Earliest request via timestamp index
+            return byTimestamp.peekFloor();
+        }
+    }
+
+    /**
+     * Checks if request set is empty
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return req.isEmpty();
+    }
+
+    public String toString() {
+        return req.toString();
+    }
+
+    public int getSize() {
+        return req.size();
+    }
+}